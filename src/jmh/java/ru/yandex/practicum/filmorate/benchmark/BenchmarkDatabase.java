@@ -0,0 +1,141 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Встроенная H2 со схемой приложения и синтетическими данными для бенчмарков.
+ */
+public final class BenchmarkDatabase implements AutoCloseable {
+    private static final int GENRE_COUNT = 6;
+    private static final int RATING_COUNT = 5;
+
+    private final EmbeddedDatabase database;
+    private final JdbcTemplate jdbcTemplate;
+    private final Random random = new Random(42);
+
+    private BenchmarkDatabase() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .setName("benchmark-" + UUID.randomUUID())
+                .build();
+        Flyway.configure().dataSource(database).load().migrate();
+        jdbcTemplate = new JdbcTemplate(database);
+    }
+
+    public static BenchmarkDatabase seed(int users, int films, int likesPerUser, int friendsPerUser) {
+        BenchmarkDatabase db = new BenchmarkDatabase();
+        db.insertUsers(users);
+        db.insertFilms(films);
+        db.insertPairs("INSERT INTO likes (user_id, film_id) VALUES (?, ?)", users, films, likesPerUser, false);
+        db.insertPairs("INSERT INTO user_friends (user_id, friend_id) VALUES (?, ?)", users, users,
+                friendsPerUser, true);
+        return db;
+    }
+
+    public JdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    @Override
+    public void close() {
+        database.shutdown();
+    }
+
+    private void insertUsers(int count) {
+        jdbcTemplate.batchUpdate("INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)",
+                new IndexedSetter(count) {
+                    @Override
+                    void set(PreparedStatement ps, int i) throws SQLException {
+                        ps.setString(1, "user" + i + "@example.com");
+                        ps.setString(2, "user" + i);
+                        ps.setString(3, "Пользователь " + i);
+                        ps.setDate(4, Date.valueOf(LocalDate.of(1970, 1, 1).plusDays(i % 15000)));
+                    }
+                });
+    }
+
+    private void insertFilms(int count) {
+        jdbcTemplate.batchUpdate("INSERT INTO film (name, description, releaseDate, duration, rating_id) " +
+                        "VALUES (?, ?, ?, ?, ?)",
+                new IndexedSetter(count) {
+                    @Override
+                    void set(PreparedStatement ps, int i) throws SQLException {
+                        ps.setString(1, "Фильм " + i);
+                        ps.setString(2, "Описание фильма номер " + i);
+                        ps.setDate(3, Date.valueOf(LocalDate.of(1950, 1, 1).plusDays(i % 27000)));
+                        ps.setInt(4, 60 + i % 120);
+                        ps.setInt(5, 1 + i % RATING_COUNT);
+                    }
+                });
+        List<Object[]> genres = new ArrayList<>();
+        for (long filmId = 1; filmId <= count; filmId++) {
+            int genreCount = random.nextInt(4);
+            Set<Integer> chosen = new HashSet<>();
+            while (chosen.size() < genreCount) {
+                chosen.add(1 + random.nextInt(GENRE_COUNT));
+            }
+            for (int genreId : chosen) {
+                genres.add(new Object[]{filmId, genreId});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO genres_film (film_id, genre_id) VALUES (?, ?)", genres);
+    }
+
+    private void insertPairs(String sql, int owners, int targets, int perOwner, boolean excludeSelf) {
+        List<Object[]> rows = new ArrayList<>();
+        for (long owner = 1; owner <= owners; owner++) {
+            Set<Long> chosen = new HashSet<>();
+            int wanted = Math.min(perOwner, targets - (excludeSelf ? 1 : 0));
+            while (chosen.size() < wanted) {
+                long target = 1 + random.nextInt(targets);
+                if (!excludeSelf || target != owner) {
+                    chosen.add(target);
+                }
+            }
+            for (long target : chosen) {
+                rows.add(new Object[]{owner, target});
+            }
+            if (rows.size() >= 10_000) {
+                jdbcTemplate.batchUpdate(sql, rows);
+                rows.clear();
+            }
+        }
+        jdbcTemplate.batchUpdate(sql, rows);
+    }
+
+    private abstract static class IndexedSetter implements BatchPreparedStatementSetter {
+        private final int size;
+
+        IndexedSetter(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public void setValues(PreparedStatement ps, int i) throws SQLException {
+            set(ps, i + 1);
+        }
+
+        @Override
+        public int getBatchSize() {
+            return size;
+        }
+
+        abstract void set(PreparedStatement ps, int i) throws SQLException;
+    }
+}
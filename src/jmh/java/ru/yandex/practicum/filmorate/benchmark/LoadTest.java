@@ -0,0 +1,117 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочный тест запущенного приложения: N одновременных клиентов в цикле читают фильмы, популярное и жанры.
+ * Печатает пропускную способность и перцентили задержки успешных ответов, а также число ответов 5xx,
+ * таймаутов клиента и прочих ошибок. Для сравнения режимов приложение запускается дважды:
+ * с spring.threads.virtual.enabled=false и =true.
+ * <p>
+ * mvn -Pjmh -DskipTests test-compile exec:exec@load-test -Dload.url=http://localhost:8080 -Dload.clients=10000
+ */
+public class LoadTest {
+    private static final String[] PATHS = {"/films/%d", "/films/popular?count=10", "/genres", "/users/%d/friends"};
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = System.getProperty("load.url", "http://localhost:8080");
+        int clients = Integer.getInteger("load.clients", 10_000);
+        int seconds = Integer.getInteger("load.seconds", 30);
+        int maxId = Integer.getInteger("load.max-id", 1000);
+
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        long[][] latencies = new long[clients][];
+        AtomicLong serverErrors = new AtomicLong();
+        AtomicLong timeouts = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                int clientId = i;
+                executor.submit(() -> {
+                    LongList samples = new LongList();
+                    start.await();
+                    while (System.nanoTime() < deadline) {
+                        String path = String.format(PATHS[ThreadLocalRandom.current().nextInt(PATHS.length)],
+                                1 + ThreadLocalRandom.current().nextInt(maxId));
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                                .timeout(Duration.ofSeconds(30))
+                                .build();
+                        long begin = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 500) {
+                                serverErrors.incrementAndGet();
+                            } else {
+                                samples.add(System.nanoTime() - begin);
+                            }
+                        } catch (HttpTimeoutException e) {
+                            timeouts.incrementAndGet();
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                    latencies[clientId] = samples.toArray();
+                    return null;
+                });
+            }
+            start.countDown();
+        }
+
+        List<long[]> all = new ArrayList<>(clients);
+        for (long[] clientLatencies : latencies) {
+            if (clientLatencies != null) {
+                all.add(clientLatencies);
+            }
+        }
+        long[] merged = all.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.printf("clients=%d duration=%ds ok=%d throughput=%.0f req/s 5xx=%d timeouts=%d failures=%d%n",
+                clients, seconds, merged.length, merged.length / (double) seconds, serverErrors.get(),
+                timeouts.get(), failures.get());
+        System.out.printf("latency ms: p50=%.1f p90=%.1f p99=%.1f max=%.1f%n",
+                percentile(merged, 0.50), percentile(merged, 0.90), percentile(merged, 0.99),
+                percentile(merged, 1.0));
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private static final class LongList {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
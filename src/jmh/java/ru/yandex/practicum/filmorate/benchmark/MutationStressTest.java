@@ -0,0 +1,208 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Ratings;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Стресс-тест изменений лайков и дружбы через сервисы: потоки в цикле ставят и снимают лайки, добавляют
+ * и удаляют друзей, изредка удаляют фильмы и пользователей и создают новых взамен. После каждого прогона
+ * проверяются инварианты: нет неожиданных ошибок, лайки и дружба ссылаются только на существующие
+ * фильмы и пользователей, счётчики индекса популярности совпадают с самими лайками.
+ * Печатает пропускную способность для 1–64 потоков.
+ * <p>
+ * mvn -Pjmh -DskipTests test-compile exec:exec@stress-test -Dstress.engine=memory
+ */
+public class MutationStressTest {
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    public static void main(String[] args) throws Exception {
+        String engine = System.getProperty("stress.engine", "jdbc");
+        int seconds = Integer.getInteger("stress.seconds", 5);
+        int entities = Integer.getInteger("stress.entities", 1000);
+        Path directory = Files.createTempDirectory("mutation-stress");
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:mem:stress;DB_CLOSE_DELAY=-1",
+                        "filmorate.storage.engine=" + engine,
+                        "filmorate.storage.memory.dir=" + directory,
+                        "logging.level.root=WARN")
+                .run()) {
+            FilmService filmService = context.getBean(FilmService.class);
+            UserService userService = context.getBean(UserService.class);
+            FilmStorage filmStorage = context.getBean(FilmStorage.class);
+            UserStorage userStorage = context.getBean(UserStorage.class);
+
+            AtomicLongArray films = new AtomicLongArray(entities);
+            AtomicLongArray users = new AtomicLongArray(entities);
+            for (int i = 0; i < entities; i++) {
+                films.set(i, filmService.createFilm(newFilm()).getId());
+                users.set(i, userService.createUser(newUser()).getId());
+            }
+
+            System.out.printf("engine=%s entities=%d duration=%ds%n", engine, entities, seconds);
+            boolean failed = false;
+            for (int threads : THREADS) {
+                Round round = new Round(filmService, userService, films, users);
+                round.run(threads, seconds);
+                List<String> violations = checkInvariants(filmStorage, userStorage);
+                System.out.printf("threads=%2d ops=%9d throughput=%9.0f ops/s notFound=%6d errors=%d violations=%d%n",
+                        threads, round.operations.get(), round.operations.get() / (double) seconds,
+                        round.notFound.get(), round.errors.size(), violations.size());
+                round.errors.stream().limit(5).forEach(error -> System.out.println("  error: " + error));
+                violations.stream().limit(5).forEach(violation -> System.out.println("  violation: " + violation));
+                failed |= !round.errors.isEmpty() || !violations.isEmpty();
+            }
+            if (failed) {
+                System.exit(1);
+            }
+        }
+    }
+
+    private static List<String> checkInvariants(FilmStorage filmStorage, UserStorage userStorage) {
+        List<String> violations = new ArrayList<>();
+        Map<Long, Integer> counted = new HashMap<>();
+        filmStorage.forEachLike((filmId, userId) -> {
+            counted.merge(filmId, 1, Integer::sum);
+            if (!filmStorage.filmExists(filmId) || !userStorage.userExists(userId)) {
+                violations.add("лайк " + filmId + "/" + userId + " ссылается на удалённую сущность");
+            }
+        });
+        List<Long> filmIds = filmStorage.getFilmIds(0, Integer.MAX_VALUE);
+        filmStorage.getLikeCounts(filmIds).forEach((filmId, likes) -> {
+            int expected = counted.getOrDefault(filmId, 0);
+            if (likes != expected) {
+                violations.add("у фильма " + filmId + " в индексе " + likes + " лайков, в хранилище " + expected);
+            }
+        });
+        for (User user : userStorage.getAllUsers()) {
+            Set<Long> seen = new HashSet<>();
+            for (User friend : userStorage.getFriends(user.getId())) {
+                if (friend.getId() == user.getId() || !seen.add(friend.getId())
+                        || !userStorage.userExists(friend.getId())) {
+                    violations.add("неверная дружба " + user.getId() + " -> " + friend.getId());
+                }
+            }
+        }
+        return violations;
+    }
+
+    private static Film newFilm() {
+        return Film.builder()
+                .name("Stress")
+                .description("Stress film")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(90)
+                .mpa(new Ratings(1, null))
+                .build();
+    }
+
+    private static User newUser() {
+        return User.builder()
+                .email("stress@example.com")
+                .login("stress")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+
+    private static final class Round {
+        private final FilmService filmService;
+        private final UserService userService;
+        private final AtomicLongArray films;
+        private final AtomicLongArray users;
+        private final AtomicLong operations = new AtomicLong();
+        private final AtomicLong notFound = new AtomicLong();
+        private final ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+
+        Round(FilmService filmService, UserService userService, AtomicLongArray films, AtomicLongArray users) {
+            this.filmService = filmService;
+            this.userService = userService;
+            this.films = films;
+            this.users = users;
+        }
+
+        void run(int threads, int seconds) throws InterruptedException {
+            CountDownLatch start = new CountDownLatch(1);
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+            List<Thread> workers = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                Thread worker = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    long done = 0;
+                    while (System.nanoTime() < deadline) {
+                        step(ThreadLocalRandom.current());
+                        done++;
+                    }
+                    operations.addAndGet(done);
+                }, "stress-" + i);
+                worker.start();
+                workers.add(worker);
+            }
+            start.countDown();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+
+        private void step(ThreadLocalRandom random) {
+            int filmSlot = random.nextInt(films.length());
+            int userSlot = random.nextInt(users.length());
+            int otherSlot = (userSlot + 1 + random.nextInt(users.length() - 1)) % users.length();
+            long filmId = films.get(filmSlot);
+            long userId = users.get(userSlot);
+            long otherId = users.get(otherSlot);
+            int operation = random.nextInt(1000);
+            try {
+                if (operation < 450) {
+                    filmService.addLike(filmId, userId);
+                } else if (operation < 700) {
+                    filmService.removeLike(filmId, userId);
+                } else if (operation < 850) {
+                    userService.addFriend(userId, otherId);
+                } else if (operation < 990) {
+                    userService.removeFriend(userId, otherId);
+                } else if (operation < 995) {
+                    filmService.deleteFilm(filmId);
+                    films.compareAndSet(filmSlot, filmId, filmService.createFilm(newFilm()).getId());
+                } else {
+                    userService.deleteUser(userId);
+                    users.compareAndSet(userSlot, userId, userService.createUser(newUser()).getId());
+                }
+            } catch (NotFoundException e) {
+                // Ожидаемо: фильм или пользователь удалён другим потоком
+                notFound.incrementAndGet();
+            } catch (RuntimeException e) {
+                errors.add(e.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.inmemory.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.inmemory.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.inmemory.MemoryStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Пропускная способность записи лайков и дружбы из нескольких потоков: построчные INSERT в H2
+ * против журнала связей хранилища в памяти с групповой фиксацией (fsync до ответа) и со сбросом раз в 100 мс.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Threads(8)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RelationLogBenchmark {
+
+    @Param({"jdbc", "group-commit", "interval"})
+    private String backend;
+
+    @Param("10000")
+    private int users;
+
+    @Param("10000")
+    private int films;
+
+    private BenchmarkDatabase database;
+    private Path directory;
+    private MemoryStore store;
+    private FilmStorage filmStorage;
+    private UserStorage userStorage;
+
+    @Setup
+    public void setUp() throws IOException {
+        database = BenchmarkDatabase.seed(users, films, 0, 0);
+        GenreDbStorage genreStorage = new GenreDbStorage(database.getJdbcTemplate());
+        genreStorage.refresh();
+        FilmDbStorage dbFilmStorage = new FilmDbStorage(database.getJdbcTemplate(), genreStorage, Optional.empty());
+        dbFilmStorage.rebuildLikesIndex();
+        UserDbStorage dbUserStorage = new UserDbStorage(database.getJdbcTemplate(), Optional.empty());
+        if ("jdbc".equals(backend)) {
+            filmStorage = dbFilmStorage;
+            userStorage = dbUserStorage;
+            return;
+        }
+        directory = Files.createTempDirectory("relation-log");
+        store = new MemoryStore(directory, "group-commit".equals(backend) ? 0 : 100, 0, 64 << 20, 10);
+        store.open();
+        userStorage = new InMemoryUserStorage(store);
+        userStorage.createUsers(dbUserStorage.getAllUsers());
+        filmStorage = new InMemoryFilmStorage(store);
+        filmStorage.createFilms(dbFilmStorage.getAllFilms());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        database.close();
+        if (store != null) {
+            store.close();
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean likeAndUnlike() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long filmId = 1 + random.nextInt(films);
+        long userId = 1 + random.nextInt(users);
+        return filmStorage.addLike(filmId, userId) && filmStorage.removeLike(filmId, userId);
+    }
+
+    @Benchmark
+    public boolean befriendAndUnfriend() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long userId = 1 + random.nextInt(users);
+        long friendId = 1 + random.nextInt(users);
+        return userStorage.addFriend(userId, friendId) && userStorage.removeFriend(userId, friendId);
+    }
+}
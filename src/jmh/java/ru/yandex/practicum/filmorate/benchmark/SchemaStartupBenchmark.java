@@ -0,0 +1,144 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Инициализация схемы при старте на файловой базе с ~1 млн лайков: прежний schema.sql
+ * (DROP и пересоздание таблиц, данные теряются) против миграций Flyway, которым на актуальной базе
+ * достаточно сверить историю. Каждая итерация начинается с копии заранее заполненного файла базы.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class SchemaStartupBenchmark {
+    private static final String DATABASE_FILE = "filmorate.mv.db";
+    private static final String LEGACY_DROP = "DROP TABLE IF EXISTS users CASCADE;\n" +
+            "DROP TABLE IF EXISTS user_friends CASCADE;\n" +
+            "DROP TABLE IF EXISTS genre CASCADE;\n" +
+            "DROP TABLE IF EXISTS ratings CASCADE;\n" +
+            "DROP TABLE IF EXISTS film CASCADE;\n" +
+            "DROP TABLE IF EXISTS likes CASCADE;\n" +
+            "DROP TABLE IF EXISTS genres_film CASCADE;\n";
+
+    @Param("1000000")
+    private int likes;
+
+    @Param("1000")
+    private int films;
+
+    private Path template;
+    private Path working;
+    private DataSource dataSource;
+
+    @Setup(Level.Trial)
+    public void seedTemplate() throws IOException {
+        template = Files.createTempDirectory("schema-startup-template");
+        DataSource seed = dataSource(template);
+        migrate(seed);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(seed);
+        int users = Math.max(1, likes / films);
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) " +
+                "SELECT 'user' || x || '@example.com', 'user' || x, 'user' || x, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, ?)", users);
+        jdbcTemplate.update("INSERT INTO film (name, description, releaseDate, duration, rating_id) " +
+                "SELECT 'Фильм ' || x, 'Описание ' || x, DATE '2000-01-01', 100, 1 + MOD(x, 5) " +
+                "FROM SYSTEM_RANGE(1, ?)", films);
+        jdbcTemplate.update("INSERT INTO genres_film (film_id, genre_id) SELECT id, 1 + MOD(id, 6) FROM film");
+        jdbcTemplate.update("INSERT INTO likes (user_id, film_id) SELECT u.id, f.id FROM users u CROSS JOIN film f");
+        jdbcTemplate.execute("SHUTDOWN COMPACT");
+    }
+
+    @Setup(Level.Iteration)
+    public void copyTemplate() throws IOException {
+        working = Files.createTempDirectory("schema-startup");
+        Files.copy(template.resolve(DATABASE_FILE), working.resolve(DATABASE_FILE),
+                StandardCopyOption.REPLACE_EXISTING);
+        dataSource = dataSource(working);
+        // Файл базы открывается заранее, как его держал бы пул соединений приложения
+        new JdbcTemplate(dataSource).queryForObject("SELECT 1", Integer.class);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeWorking() throws IOException {
+        new JdbcTemplate(dataSource).execute("SHUTDOWN");
+        delete(working);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTemplate() throws IOException {
+        delete(template);
+    }
+
+    @Benchmark
+    public int dropAndRecreate() {
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                new ByteArrayResource(LEGACY_DROP.getBytes(StandardCharsets.UTF_8)),
+                new ClassPathResource("db/migration/V1__create_tables.sql"),
+                new ClassPathResource("db/migration/V2__reference_data.sql"),
+                new ClassPathResource("db/migration/V3__secondary_indexes.sql"),
+                new ClassPathResource("db/migration/V4__version_columns.sql"),
+                new ClassPathResource("db/migration/V5__genres_film_primary_key.sql"));
+        populator.setSqlScriptEncoding(StandardCharsets.UTF_8.name());
+        populator.execute(dataSource);
+        return countLikes();
+    }
+
+    @Benchmark
+    public int flywayMigrate() {
+        migrate(dataSource);
+        return countLikes();
+    }
+
+    private int countLikes() {
+        return new JdbcTemplate(dataSource).queryForObject("SELECT COUNT(*) FROM likes", Integer.class);
+    }
+
+    private static void migrate(DataSource dataSource) {
+        Flyway.configure().dataSource(dataSource).load().migrate();
+    }
+
+    private static DataSource dataSource(Path directory) {
+        return new DriverManagerDataSource(
+                "jdbc:h2:file:" + directory.resolve("filmorate").toAbsolutePath() + ";DB_CLOSE_DELAY=-1",
+                "sa", "password");
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
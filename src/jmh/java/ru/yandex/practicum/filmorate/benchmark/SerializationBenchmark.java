@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Ratings;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SerializationBenchmark {
+
+    @Param({"10", "1000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private List<Film> films;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        films = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            films.add(Film.builder()
+                    .id(i)
+                    .name("Фильм " + i)
+                    .description("Описание фильма номер " + i)
+                    .releaseDate(LocalDate.of(1950, 1, 1).plusDays(i))
+                    .duration(90)
+                    .mpa(new Ratings(1 + i % 5, "PG"))
+                    .genres(List.of(new Genre(1, "Комедия"), new Genre(2, "Драма")))
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeFilms() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(films);
+    }
+}
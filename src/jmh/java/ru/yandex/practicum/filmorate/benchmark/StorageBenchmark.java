@@ -0,0 +1,217 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.RatingsDbStorage;
+import ru.yandex.practicum.filmorate.dao.UserDbStorage;
+import ru.yandex.practicum.filmorate.index.FilmRecommendationIndex;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Ratings;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.CompositeFilmLoader;
+import ru.yandex.practicum.filmorate.service.EntityLocks;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StorageBenchmark {
+
+    @Param("10000")
+    private int users;
+
+    @Param("10000")
+    private int films;
+
+    @Param("20")
+    private int likesPerUser;
+
+    @Param("50")
+    private int friendsPerUser;
+
+    @Param("10")
+    private int popularCount;
+
+    @Param("1000")
+    private int pageSize;
+
+    private BenchmarkDatabase database;
+    private FilmDbStorage filmStorage;
+    private GenreDbStorage genreStorage;
+    private UserDbStorage userStorage;
+    private UserDbStorage graphUserStorage;
+    private FilmService filmService;
+    private List<Long> filmPage;
+    private List<Long> scatteredPage;
+    private ExecutorService fanOutExecutor;
+    private CompositeFilmLoader compositeLoader;
+
+    @Setup
+    public void setUp() {
+        database = BenchmarkDatabase.seed(users, films, likesPerUser, friendsPerUser);
+        genreStorage = new GenreDbStorage(database.getJdbcTemplate());
+        genreStorage.refresh();
+        RatingsDbStorage ratingsStorage = new RatingsDbStorage(database.getJdbcTemplate());
+        ratingsStorage.refresh();
+        filmStorage = new FilmDbStorage(database.getJdbcTemplate(), genreStorage, Optional.empty());
+        filmStorage.rebuildLikesIndex();
+        userStorage = new UserDbStorage(database.getJdbcTemplate(), Optional.empty());
+        graphUserStorage = new UserDbStorage(database.getJdbcTemplate(), Optional.of(new FriendGraph()));
+        graphUserStorage.rebuildFriendGraph();
+        FilmSearchIndex searchIndex = new FilmSearchIndex(filmStorage, "", 0);
+        fanOutExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        searchIndex.rebuild();
+        compositeLoader = new CompositeFilmLoader(filmStorage, genreStorage, fanOutExecutor, 256, 4);
+        filmService = new FilmService(filmStorage, userStorage, genreStorage, ratingsStorage,
+                Optional.of(new FilmRecommendationIndex(filmStorage, 60)), searchIndex, compositeLoader,
+                new EntityLocks(1024),
+                new TransactionTemplate(new DataSourceTransactionManager(database.getJdbcTemplate().getDataSource())),
+                false, 256);
+        filmPage = LongStream.rangeClosed(1, films).boxed().collect(Collectors.toList());
+        // Разрозненные ID, как в популярном, поиске и рекомендациях
+        List<Long> shuffled = new ArrayList<>(filmPage);
+        Collections.shuffle(shuffled, new Random(42));
+        scatteredPage = List.copyOf(shuffled.subList(0, Math.min(pageSize, films)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        fanOutExecutor.shutdown();
+        database.close();
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilms() {
+        return filmStorage.getPopularFilms(popularCount);
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilmsByGenre() {
+        return filmStorage.getPopularFilms(popularCount, 2, null);
+    }
+
+    @Benchmark
+    public List<Film> getFilmsPageSequential() {
+        return filmStorage.getFilms(0, pageSize);
+    }
+
+    @Benchmark
+    public List<Film> getFilmsPageComposite() {
+        return compositeLoader.loadFilms(filmStorage.getFilmIds(0, pageSize));
+    }
+
+    @Benchmark
+    public List<Film> getFilmsByIdsSequential() {
+        return compositeLoader.loadFilmsSequentially(scatteredPage);
+    }
+
+    @Benchmark
+    public List<Film> getFilmsByIdsComposite() {
+        return compositeLoader.loadFilms(scatteredPage);
+    }
+
+    @Benchmark
+    public Optional<Film> getFilmByIdSequential() {
+        return filmStorage.getFilmById(1 + ThreadLocalRandom.current().nextInt(films));
+    }
+
+    @Benchmark
+    public Optional<Film> getFilmByIdComposite() {
+        return compositeLoader.loadFilm(1 + ThreadLocalRandom.current().nextInt(films));
+    }
+
+    @Benchmark
+    public List<Film> searchFilms() {
+        return filmService.searchFilms("фильм 12", "title,description", popularCount);
+    }
+
+    @Benchmark
+    public Map<Long, List<Genre>> getGenresForFilms() {
+        return genreStorage.getGenresForFilms(filmPage);
+    }
+
+    /**
+     * Прежняя реализация getGenresForFilms для сравнения: ID подставляются в текст запроса,
+     * строки читаются через queryForList в Map и жанры создаются заново для каждой строки.
+     */
+    @Benchmark
+    public Map<Long, List<Genre>> getGenresForFilmsConcatenated() {
+        String sql = "SELECT gf.film_id, g.genre_id, g.name " +
+                "FROM genres_film gf " +
+                "JOIN genre g ON gf.genre_id = g.genre_id " +
+                "WHERE gf.film_id IN (" + filmPage.stream().map(String::valueOf)
+                .collect(Collectors.joining(",")) + ")";
+        Map<Long, List<Genre>> result = new HashMap<>();
+        for (Map<String, Object> row : database.getJdbcTemplate().queryForList(sql)) {
+            Long filmId = ((Number) row.get("film_id")).longValue();
+            Genre genre = new Genre(((Number) row.get("genre_id")).intValue(), (String) row.get("name"));
+            result.computeIfAbsent(filmId, k -> new ArrayList<>()).add(genre);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<User> getCommonFriends() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return userStorage.getCommonFriends(1 + random.nextInt(users), 1 + random.nextInt(users));
+    }
+
+    @Benchmark
+    public List<User> getCommonFriendsFromGraph() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return graphUserStorage.getCommonFriends(1 + random.nextInt(users), 1 + random.nextInt(users));
+    }
+
+    @Benchmark
+    public List<User> getFriendSuggestionsFromGraph() {
+        return graphUserStorage.getFriendSuggestions(1 + ThreadLocalRandom.current().nextInt(users), 10);
+    }
+
+    @Benchmark
+    public Film createFilm() {
+        Film film = Film.builder()
+                .name("Новый фильм")
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(120)
+                .mpa(new Ratings(3, null))
+                .genres(List.of(new Genre(1, null), new Genre(2, null), new Genre(4, null)))
+                .build();
+        return filmService.createFilm(film);
+    }
+}
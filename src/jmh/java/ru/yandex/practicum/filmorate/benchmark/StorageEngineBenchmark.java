@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.UserDbStorage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.inmemory.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.inmemory.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.inmemory.MemoryStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Одни и те же данные в хранилище на H2 и в хранилище в памяти с журналом на диске
+ * (сброс журнала раз в 100 мс, как в настройках по умолчанию).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StorageEngineBenchmark {
+
+    @Param({"jdbc", "memory"})
+    private String engine;
+
+    @Param("10000")
+    private int users;
+
+    @Param("10000")
+    private int films;
+
+    @Param("100")
+    private int pageSize;
+
+    private BenchmarkDatabase database;
+    private Path directory;
+    private MemoryStore store;
+    private FilmStorage filmStorage;
+
+    @Setup
+    public void setUp() throws IOException {
+        database = BenchmarkDatabase.seed(users, films, 20, 50);
+        GenreDbStorage genreStorage = new GenreDbStorage(database.getJdbcTemplate());
+        genreStorage.refresh();
+        FilmDbStorage dbFilmStorage = new FilmDbStorage(database.getJdbcTemplate(), genreStorage, Optional.empty());
+        dbFilmStorage.rebuildLikesIndex();
+        if ("jdbc".equals(engine)) {
+            filmStorage = dbFilmStorage;
+            return;
+        }
+        directory = Files.createTempDirectory("storage-engine");
+        store = new MemoryStore(directory, 100, 0, 64 << 20, 0);
+        store.open();
+        new InMemoryUserStorage(store).createUsers(
+                new UserDbStorage(database.getJdbcTemplate(), Optional.empty()).getAllUsers());
+        filmStorage = new InMemoryFilmStorage(store);
+        filmStorage.createFilms(dbFilmStorage.getAllFilms());
+        List<Like> likes = new ArrayList<>();
+        dbFilmStorage.forEachLike((filmId, userId) -> likes.add(new Like(filmId, userId)));
+        filmStorage.addLikes(likes);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        database.close();
+        if (store != null) {
+            store.close();
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public Optional<Film> getFilmById() {
+        return filmStorage.getFilmById(1 + ThreadLocalRandom.current().nextInt(films));
+    }
+
+    @Benchmark
+    public List<Film> getFilmsPage() {
+        return filmStorage.getFilms(ThreadLocalRandom.current().nextInt(films - pageSize), pageSize);
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilms() {
+        return filmStorage.getPopularFilms(10);
+    }
+
+    @Benchmark
+    public boolean likeAndUnlike() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long filmId = 1 + random.nextInt(films);
+        long userId = 1 + random.nextInt(users);
+        return filmStorage.addLike(filmId, userId) && filmStorage.removeLike(filmId, userId);
+    }
+}
@@ -0,0 +1,180 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * LRU-кэш готового JSON сущностей в UTF-8, ограниченный суммарным размером.
+ * Запись хранит версию сущности; после изменения в кэш кладётся «надгробие» с новой версией,
+ * чтобы запоздавший читатель не вернул в кэш старое представление.
+ */
+@Component
+public class JsonByteCache {
+    public static final String FILM = "film";
+    public static final String USER = "user";
+    public static final String REFERENCE_DATA = "reference";
+
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final ObjectMapper objectMapper;
+    private final long maxBytes;
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long sizeBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    @Autowired
+    public JsonByteCache(ObjectMapper objectMapper,
+                         @Value("${filmorate.json-cache.max-bytes:33554432}") long maxBytes) {
+        this.objectMapper = objectMapper;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * JSON сущности ровно указанной версии; при промахе загружает и кэширует её под версией из загруженного объекта.
+     */
+    public <T> byte[] renderEntity(String type, long id, long version, Supplier<T> loader,
+                                   ToLongFunction<T> versionOf) {
+        byte[] cached = get(new Key(type, id), version);
+        if (cached != null) {
+            return cached;
+        }
+        T value = loader.get();
+        byte[] json = serialize(value);
+        put(new Key(type, id), versionOf.applyAsLong(value), json);
+        return json;
+    }
+
+    /**
+     * JSON-массив сущностей в порядке ids. Отсутствующие в кэше сущности догружаются одним вызовом loader.
+     */
+    public <T> byte[] renderEntities(String type, List<Long> ids, Function<List<Long>, List<T>> loader,
+                                     ToLongFunction<T> idOf, ToLongFunction<T> versionOf) {
+        Map<Long, byte[]> rendered = new HashMap<>(ids.size() * 2);
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            byte[] cached = get(new Key(type, id), -1);
+            if (cached != null) {
+                rendered.put(id, cached);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (T value : loader.apply(missing)) {
+                long id = idOf.applyAsLong(value);
+                byte[] json = serialize(value);
+                put(new Key(type, id), versionOf.applyAsLong(value), json);
+                rendered.put(id, json);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write('[');
+        boolean first = true;
+        for (Long id : ids) {
+            byte[] json = rendered.get(id);
+            if (json == null) {
+                continue;
+            }
+            if (!first) {
+                out.write(',');
+            }
+            out.writeBytes(json);
+            first = false;
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+
+    /**
+     * Сбрасывает JSON сущности; версии младше minVersion больше не будут приняты в кэш.
+     */
+    public synchronized void invalidate(String type, long id, long minVersion) {
+        store(new Key(type, id), new Entry(minVersion, null));
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    private synchronized byte[] get(Key key, long version) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.json() != null && (version < 0 || entry.version() == version)) {
+            hits++;
+            return entry.json();
+        }
+        misses++;
+        return null;
+    }
+
+    private synchronized void put(Key key, long version, byte[] json) {
+        Entry current = entries.get(key);
+        if (current != null && current.version() > version) {
+            return;
+        }
+        store(key, new Entry(version, json));
+    }
+
+    private void store(Key key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            sizeBytes -= previous.weight();
+        }
+        sizeBytes += entry.weight();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (sizeBytes > maxBytes && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            if (eldest == entry) {
+                break;
+            }
+            iterator.remove();
+            sizeBytes -= eldest.weight();
+            evictions++;
+        }
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record Key(String type, long id) {
+    }
+
+    private record Entry(long version, byte[] json) {
+        long weight() {
+            return ENTRY_OVERHEAD + (json == null ? 0 : json.length);
+        }
+    }
+}
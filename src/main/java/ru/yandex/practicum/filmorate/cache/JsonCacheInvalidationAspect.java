@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.cache;
+
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+/**
+ * Сбрасывает закэшированный JSON после записей через хранилища фильмов и пользователей.
+ */
+@Aspect
+@Component
+public class JsonCacheInvalidationAspect {
+    private final JsonByteCache cache;
+
+    @Autowired
+    public JsonCacheInvalidationAspect(JsonByteCache cache) {
+        this.cache = cache;
+    }
+
+    @AfterReturning(pointcut = "execution(* ru.yandex.practicum.filmorate.storage.FilmStorage.updateFilm(..))",
+            returning = "film")
+    public void filmUpdated(Film film) {
+        cache.invalidate(JsonByteCache.FILM, film.getId(), film.getVersion());
+    }
+
+    @AfterReturning("execution(* ru.yandex.practicum.filmorate.storage.FilmStorage.deleteFilm(..)) && args(id)")
+    public void filmDeleted(long id) {
+        cache.invalidate(JsonByteCache.FILM, id, Long.MAX_VALUE);
+    }
+
+    @AfterReturning(pointcut = "execution(* ru.yandex.practicum.filmorate.storage.UserStorage.updateUser(..))",
+            returning = "user")
+    public void userUpdated(User user) {
+        cache.invalidate(JsonByteCache.USER, user.getId(), user.getVersion());
+    }
+
+    @AfterReturning("execution(* ru.yandex.practicum.filmorate.storage.UserStorage.deleteUser(..)) && args(id)")
+    public void userDeleted(long id) {
+        cache.invalidate(JsonByteCache.USER, id, Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Пул для параллельных обращений к хранилищам внутри одного запроса.
+ * При spring.threads.virtual.enabled=true каждая задача получает свой виртуальный поток,
+ * иначе используется ограниченный пул платформенных потоков.
+ */
+@Configuration
+public class ConcurrencyConfig {
+    public static final String FAN_OUT_EXECUTOR = "fanOutExecutor";
+
+    @Bean(name = FAN_OUT_EXECUTOR, destroyMethod = "shutdown")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public ExecutorService virtualFanOutExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("fan-out-", 0).factory());
+    }
+
+    @Bean(name = FAN_OUT_EXECUTOR, destroyMethod = "shutdown")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public ExecutorService platformFanOutExecutor(@Value("${filmorate.fan-out.threads:16}") int threads,
+                                                  @Value("${filmorate.fan-out.queue-capacity:1000}") int capacity) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "fan-out-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+        // При переполнении очереди задача выполняется в вызывающем потоке: запрос замедляется, но не падает
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(capacity),
+                threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
@@ -1,12 +1,20 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.cache.JsonByteCache;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.util.Collection;
 
@@ -15,11 +23,17 @@ import java.util.Collection;
 @RequestMapping("/films")
 public class FilmController {
     private static final LocalDate MIN_RELEASE_DATE = LocalDate.of(1895, 12, 28);
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+    private static final int MAX_PAGE_SIZE = 1000;
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
+    private final JsonByteCache jsonCache;
 
     @Autowired
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, ObjectMapper objectMapper, JsonByteCache jsonCache) {
         this.filmService = filmService;
+        this.objectMapper = objectMapper;
+        this.jsonCache = jsonCache;
     }
 
     @PostMapping
@@ -41,15 +55,58 @@ public class FilmController {
     }
 
     @GetMapping
-    public Collection<Film> getAllFilms() {
-        log.info("Получен запрос GET /films");
-        return filmService.getAllFilms();
+    public Collection<Film> getAllFilms(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            log.info("Получен запрос GET /films");
+            return filmService.getAllFilms();
+        }
+        log.info("Получен запрос GET /films?after={}&limit={}", after, limit);
+        return filmService.getFilms(after == null ? 0 : after, validatePageSize(limit));
+    }
+
+    @GetMapping(produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamFilms(@RequestParam(defaultValue = "0") long after) {
+        log.info("Получен запрос GET /films в формате NDJSON, after={}", after);
+        StreamingResponseBody body = out -> filmService.streamFilms(after, film -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(film));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON))
+                .body(body);
     }
 
     @GetMapping("/{id}")
-    public Film getFilmById(@PathVariable long id) {
+    public ResponseEntity<byte[]> getFilmById(@PathVariable long id, WebRequest request) {
         log.info("Получен запрос GET /films/{}", id);
-        return filmService.getFilmById(id);
+        long version = filmService.getFilmVersion(id);
+        if (request.checkNotModified("film-" + id + "-" + version)) {
+            return null;
+        }
+        byte[] json = jsonCache.renderEntity(JsonByteCache.FILM, id, version,
+                () -> filmService.getFilmById(id), Film::getVersion);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(json);
+    }
+
+    @DeleteMapping("/{id}")
+    public void deleteFilm(@PathVariable long id) {
+        log.info("Получен запрос DELETE /films/{}", id);
+        filmService.deleteFilm(id);
+    }
+
+    @GetMapping("/search")
+    public Collection<Film> searchFilms(
+            @RequestParam String query,
+            @RequestParam(defaultValue = "title,description") String by,
+            @RequestParam(defaultValue = "20") int limit) {
+        log.info("Получен запрос GET /films/search?query={}&by={}&limit={}", query, by, limit);
+        return filmService.searchFilms(query, by, validatePageSize(limit));
     }
 
     @PutMapping("/{id}/like/{userId}")
@@ -65,10 +122,31 @@ public class FilmController {
     }
 
     @GetMapping("/popular")
-    public Collection<Film> getPopularFilms(
-            @RequestParam(defaultValue = "10") int count) {
-        log.info("Получен запрос GET /films/popular?count={}", count);
-        return filmService.getPopularFilms(count);
+    public ResponseEntity<byte[]> getPopularFilms(
+            @RequestParam(defaultValue = "10") int count,
+            @RequestParam(required = false) Integer genreId,
+            @RequestParam(required = false) Integer year) {
+        log.info("Получен запрос GET /films/popular?count={}&genreId={}&year={}", count, genreId, year);
+        if (count <= 0 || count > MAX_PAGE_SIZE) {
+            String errorMsg = "Количество фильмов должно быть от 1 до " + MAX_PAGE_SIZE;
+            log.warn(errorMsg + " - {}", count);
+            throw new ValidationException(errorMsg);
+        }
+        byte[] json = jsonCache.renderEntities(JsonByteCache.FILM, filmService.getPopularFilmIds(count, genreId, year),
+                filmService::getFilmsByIds, Film::getId, Film::getVersion);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(json);
+    }
+
+    private int validatePageSize(Integer limit) {
+        if (limit == null) {
+            return MAX_PAGE_SIZE;
+        }
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            String errorMsg = "Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE;
+            log.warn(errorMsg + " - {}", limit);
+            throw new ValidationException(errorMsg);
+        }
+        return limit;
     }
 
     private void validateFilm(Film film) {
@@ -3,35 +3,49 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.cache.JsonByteCache;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
-import java.util.List;
-
 @Slf4j
 @RestController
 @RequestMapping("/genres")
 public class GenreController {
+    private static final long GENRES_KEY = 1;
     private final FilmService filmService;
+    private final JsonByteCache jsonCache;
 
     @Autowired
-    public GenreController(FilmService filmService) {
+    public GenreController(FilmService filmService, JsonByteCache jsonCache) {
         this.filmService = filmService;
+        this.jsonCache = jsonCache;
     }
 
     @GetMapping
-    public List<Genre> getAllGenres() {
+    public ResponseEntity<byte[]> getAllGenres(WebRequest request) {
         log.info("Получен запрос GET /genres");
-        return filmService.getAllGenres();
+        long version = filmService.getReferenceDataVersion();
+        if (request.checkNotModified("ref-" + Long.toHexString(version))) {
+            return null;
+        }
+        byte[] json = jsonCache.renderEntity(JsonByteCache.REFERENCE_DATA, GENRES_KEY, version,
+                filmService::getAllGenres, genres -> version);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(json);
     }
 
     @GetMapping("/{id}")
-    public Genre getGenreById(@PathVariable int id) {
+    public Genre getGenreById(@PathVariable int id, WebRequest request) {
         log.info("Получен запрос GET /genres/{}", id);
+        if (request.checkNotModified("ref-" + Long.toHexString(filmService.getReferenceDataVersion()))) {
+            return null;
+        }
         return filmService.getGenreById(id);
     }
 }
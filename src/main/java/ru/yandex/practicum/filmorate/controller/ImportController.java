@@ -0,0 +1,97 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.service.ImportService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Принимает NDJSON (application/x-ndjson) или CSV (text/csv) с заголовком и отвечает потоком NDJSON:
+ * строка на каждую ошибочную запись, строка прогресса после каждого записанного пакета и итог.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/import")
+public class ImportController {
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+    private static final String TEXT_CSV = "text/csv";
+    private final ImportService importService;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public ImportController(ImportService importService, ObjectMapper objectMapper) {
+        this.importService = importService;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostMapping("/{type}")
+    public void importData(@PathVariable String type, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        log.info("Получен запрос POST /import/{} - {}", type, request.getContentType());
+        ImportService.Type importType = ImportService.Type.fromPath(type);
+        ImportService.Format format = parseFormat(request.getContentType());
+
+        response.setContentType(APPLICATION_NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        OutputStream out = response.getOutputStream();
+        ImportService.ImportProgress summary = importService.importData(importType, format, request.getInputStream(),
+                new ImportService.ImportListener() {
+                    @Override
+                    public void onRowError(ImportService.RowError error) {
+                        writeEvent(out, "error", error);
+                    }
+
+                    @Override
+                    public void onProgress(ImportService.ImportProgress progress) {
+                        writeEvent(out, "progress", progress);
+                        try {
+                            out.flush();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+        writeEvent(out, "done", summary);
+        out.flush();
+    }
+
+    private ImportService.Format parseFormat(String contentType) {
+        if (contentType == null) {
+            return ImportService.Format.NDJSON;
+        }
+        MediaType mediaType = MediaType.parseMediaType(contentType);
+        if (mediaType.isCompatibleWith(MediaType.parseMediaType(TEXT_CSV))) {
+            return ImportService.Format.CSV;
+        }
+        if (mediaType.isCompatibleWith(MediaType.parseMediaType(APPLICATION_NDJSON))) {
+            return ImportService.Format.NDJSON;
+        }
+        String errorMsg = "Поддерживаются форматы " + APPLICATION_NDJSON + " и " + TEXT_CSV;
+        log.warn(errorMsg + " - {}", contentType);
+        throw new ValidationException(errorMsg);
+    }
+
+    private void writeEvent(OutputStream out, String event, Object payload) {
+        ObjectNode node = objectMapper.createObjectNode().put("event", event);
+        node.setAll((ObjectNode) objectMapper.valueToTree(payload));
+        try {
+            out.write(objectMapper.writeValueAsBytes(node));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -2,33 +2,50 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.cache.JsonByteCache;
 import ru.yandex.practicum.filmorate.model.Ratings;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
-import java.util.List;
 
 @Slf4j
 @RestController
 @RequestMapping("/mpa")
 public class RatingsController {
+    private static final long RATINGS_KEY = 2;
     private final FilmService filmService;
+    private final JsonByteCache jsonCache;
 
     @Autowired
-    public RatingsController(FilmService filmService) {
+    public RatingsController(FilmService filmService, JsonByteCache jsonCache) {
         this.filmService = filmService;
+        this.jsonCache = jsonCache;
     }
 
     @GetMapping
-    public List<Ratings> getAllRatings() {
-        return filmService.getAllRatings();
+    public ResponseEntity<byte[]> getAllRatings(WebRequest request) {
+        log.info("Получен запрос GET /mpa");
+        long version = filmService.getReferenceDataVersion();
+        if (request.checkNotModified("ref-" + Long.toHexString(version))) {
+            return null;
+        }
+        byte[] json = jsonCache.renderEntity(JsonByteCache.REFERENCE_DATA, RATINGS_KEY, version,
+                filmService::getAllRatings, ratings -> version);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(json);
     }
 
     @GetMapping("/{id}")
-    public Ratings getRatingById(@PathVariable int id) {
+    public Ratings getRatingById(@PathVariable int id, WebRequest request) {
+        log.info("Получен запрос GET /mpa/{}", id);
+        if (request.checkNotModified("ref-" + Long.toHexString(filmService.getReferenceDataVersion()))) {
+            return null;
+        }
         return filmService.getRatingById(id);
     }
 }
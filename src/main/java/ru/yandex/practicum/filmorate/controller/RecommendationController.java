@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.util.List;
+
+@Slf4j
+@RestController
+@ConditionalOnProperty(name = "filmorate.recommendations.enabled", havingValue = "true")
+@RequestMapping("/users")
+public class RecommendationController {
+    private static final int MAX_RECOMMENDATIONS = 100;
+    private final FilmService filmService;
+
+    @Autowired
+    public RecommendationController(FilmService filmService) {
+        this.filmService = filmService;
+    }
+
+    @GetMapping("/{id}/recommendations")
+    public List<Film> getRecommendations(@PathVariable long id, @RequestParam(defaultValue = "10") int limit) {
+        log.info("Получен запрос GET /users/{}/recommendations?limit={}", id, limit);
+        if (limit <= 0 || limit > MAX_RECOMMENDATIONS) {
+            String errorMsg = "Количество рекомендаций должно быть от 1 до " + MAX_RECOMMENDATIONS;
+            log.warn(errorMsg + " - {}", limit);
+            throw new ValidationException(errorMsg);
+        }
+        return filmService.getRecommendations(id, limit);
+    }
+}
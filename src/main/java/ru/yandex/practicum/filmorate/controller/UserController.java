@@ -1,12 +1,20 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.cache.JsonByteCache;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.util.Collection;
 import java.util.List;
@@ -15,11 +23,17 @@ import java.util.List;
 @RestController
 @RequestMapping("/users")
 public class UserController {
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+    private static final int MAX_PAGE_SIZE = 1000;
     private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private final JsonByteCache jsonCache;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, ObjectMapper objectMapper, JsonByteCache jsonCache) {
         this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.jsonCache = jsonCache;
     }
 
     @PostMapping
@@ -43,15 +57,49 @@ public class UserController {
     }
 
     @GetMapping
-    public Collection<User> getAllUsers() {
-        log.info("Получен запрос GET /users");
-        return userService.getAllUsers();
+    public Collection<User> getAllUsers(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            log.info("Получен запрос GET /users");
+            return userService.getAllUsers();
+        }
+        log.info("Получен запрос GET /users?after={}&limit={}", after, limit);
+        return userService.getUsers(after == null ? 0 : after, validatePageSize(limit));
+    }
+
+    @GetMapping(produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamUsers(@RequestParam(defaultValue = "0") long after) {
+        log.info("Получен запрос GET /users в формате NDJSON, after={}", after);
+        StreamingResponseBody body = out -> userService.streamUsers(after, user -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(user));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON))
+                .body(body);
     }
 
     @GetMapping("/{id}")
-    public User getUserById(@PathVariable long id) {
+    public ResponseEntity<byte[]> getUserById(@PathVariable long id, WebRequest request) {
         log.info("Получен запрос GET /users/{}", id);
-        return userService.getUserById(id);
+        long version = userService.getUserVersion(id);
+        if (request.checkNotModified("user-" + id + "-" + version)) {
+            return null;
+        }
+        byte[] json = jsonCache.renderEntity(JsonByteCache.USER, id, version,
+                () -> userService.getUserById(id), User::getVersion);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(json);
+    }
+
+    @DeleteMapping("/{id}")
+    public void deleteUser(@PathVariable long id) {
+        log.info("Получен запрос DELETE /users/{}", id);
+        userService.deleteUser(id);
     }
 
     @PutMapping("/{id}/friends/{friendId}")
@@ -78,6 +126,24 @@ public class UserController {
         return userService.getCommonFriends(id, otherId);
     }
 
+    @GetMapping("/{id}/friends/suggestions")
+    public List<User> getFriendSuggestions(@PathVariable long id, @RequestParam(defaultValue = "10") int limit) {
+        log.info("Получен запрос GET /users/{}/friends/suggestions?limit={}", id, limit);
+        return userService.getFriendSuggestions(id, validatePageSize(limit));
+    }
+
+    private int validatePageSize(Integer limit) {
+        if (limit == null) {
+            return MAX_PAGE_SIZE;
+        }
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            String errorMsg = "Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE;
+            log.warn(errorMsg + " - {}", limit);
+            throw new ValidationException(errorMsg);
+        }
+        return limit;
+    }
+
     private void processUserName(User user) {
         if (user.getName() == null || user.getName().isBlank()) {
             log.debug("Имя пользователя пустое, используем логин: {}", user.getLogin());
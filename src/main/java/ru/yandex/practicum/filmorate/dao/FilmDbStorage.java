@@ -1,14 +1,25 @@
 package ru.yandex.practicum.filmorate.dao;
 
 
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.index.FilmLikesIndex;
+import ru.yandex.practicum.filmorate.index.FilmLikesIndex.FilmSegments;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
 import ru.yandex.practicum.filmorate.model.Ratings;
+import ru.yandex.practicum.filmorate.service.AfterCommit;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.GenreStorage;
 
@@ -16,37 +27,124 @@ import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * Хранилище фильмов в БД. Индекс лайков меняется только после фиксации транзакции (AfterCommit),
+ * чтобы откат не оставлял в нём фильмов и лайков, которых нет в таблицах.
+ */
+@Slf4j
 @Repository
-@Qualifier("filmDbStorage")
+@ConditionalOnProperty(name = "filmorate.storage.engine", havingValue = "jdbc", matchIfMissing = true)
 public class FilmDbStorage implements FilmStorage {
+    private static final String HYDRATED_FILM_SELECT = "SELECT f.*, r.name AS rating_name, " +
+            "g.genre_id AS genre_id, g.name AS genre_name " +
+            "FROM film f " +
+            "LEFT JOIN ratings r ON f.rating_id = r.rating_id " +
+            "LEFT JOIN genres_film gf ON f.id = gf.film_id " +
+            "LEFT JOIN genre g ON gf.genre_id = g.genre_id ";
+    // Тот же приём, что в GenreDbStorage: список ID одним параметром-массивом, один текст запроса на любую длину
+    private static final String FILMS_BY_IDS_SQL = "SELECT f.*, r.name AS rating_name " +
+            "FROM UNNEST(CAST(? AS BIGINT ARRAY)) ids(id) " +
+            "JOIN film f ON f.id = ids.id " +
+            "LEFT JOIN ratings r ON f.rating_id = r.rating_id";
 
     private final JdbcTemplate jdbcTemplate;
+    private final FilmLikesIndex likesIndex = new FilmLikesIndex();
+    private final LikeWriteBuffer likeWriteBuffer;
 
     @Autowired
-    public FilmDbStorage(JdbcTemplate jdbcTemplate, GenreStorage genreStorage) {
+    public FilmDbStorage(JdbcTemplate jdbcTemplate, GenreStorage genreStorage,
+                         Optional<LikeWriteBuffer> likeWriteBuffer) {
         this.jdbcTemplate = jdbcTemplate;
+        this.likeWriteBuffer = likeWriteBuffer.orElse(null);
+        if (this.likeWriteBuffer != null) {
+            this.likeWriteBuffer.setListener(this::applyFlushedLikes);
+        }
+    }
+
+    @PostConstruct
+    public void rebuildLikesIndex() {
+        likesIndex.rebuild(loadLikeCounts(), loadSegments());
+        log.info("Индекс лайков построен");
+    }
+
+    /**
+     * Сверяет индекс с таблицей likes и при расхождении перестраивает его. Таблица и индекс читаются
+     * не атомарно, поэтому расхождение подтверждается повторным чтением: лайк, записанный между ними,
+     * не приводит к перестроению.
+     */
+    public boolean checkLikesIndexConsistency() {
+        if (loadLikeCounts().equals(likesIndex.snapshot())) {
+            return true;
+        }
+        Map<Long, Integer> expected = loadLikeCounts();
+        if (expected.equals(likesIndex.snapshot())) {
+            return true;
+        }
+        log.warn("Индекс лайков расходится с таблицей likes, выполняется перестроение");
+        likesIndex.rebuild(expected, loadSegments());
+        return false;
     }
 
     @Override
     public List<Film> getAllFilms() {
-        String sql = "SELECT f.*, r.name as rating_name FROM film f LEFT JOIN ratings r ON f.rating_id = r.rating_id";
-        return jdbcTemplate.query(sql, this::mapRowToFilmWithoutGenres);
+        String sql = HYDRATED_FILM_SELECT + "ORDER BY f.id, gf.genre_id";
+        List<Film> films = new ArrayList<>();
+        queryHydratedFilms(sql, films::add);
+        return films;
+    }
+
+    @Override
+    public List<Film> getFilms(long afterId, int limit) {
+        String sql = HYDRATED_FILM_SELECT +
+                "WHERE f.id IN (SELECT id FROM film WHERE id > ? ORDER BY id LIMIT ?) " +
+                "ORDER BY f.id, gf.genre_id";
+        List<Film> films = new ArrayList<>(limit);
+        queryHydratedFilms(sql, films::add, afterId, limit);
+        return films;
+    }
+
+    @Override
+    public List<Long> getFilmIds(long afterId, int limit) {
+        String sql = "SELECT id FROM film WHERE id > ? ORDER BY id LIMIT ?";
+        return jdbcTemplate.queryForList(sql, Long.class, afterId, limit);
+    }
+
+    @Override
+    public void streamFilms(long afterId, Consumer<Film> consumer) {
+        String sql = HYDRATED_FILM_SELECT + "WHERE f.id > ? ORDER BY f.id, gf.genre_id";
+        queryHydratedFilms(sql, consumer, afterId);
     }
 
     @Override
     public Optional<Film> getFilmById(long id) {
-        String sql = "SELECT f.*, r.name as rating_name " +
-                "FROM film f " +
-                "LEFT JOIN ratings r ON f.rating_id = r.rating_id " +
-                "WHERE f.id = ?";
-        try {
-            return Optional.ofNullable(jdbcTemplate.queryForObject(sql, this::mapRowToFilmWithoutGenres, id));
-        } catch (Exception e) {
-            return Optional.empty();
-        }
+        String sql = HYDRATED_FILM_SELECT + "WHERE f.id = ? ORDER BY gf.genre_id";
+        List<Film> films = new ArrayList<>(1);
+        queryHydratedFilms(sql, films::add, id);
+        return films.stream().findFirst();
+    }
+
+    @Override
+    public boolean filmExists(long id) {
+        String sql = "SELECT COUNT(*) FROM film WHERE id = ?";
+        return jdbcTemplate.queryForObject(sql, Integer.class, id) > 0;
+    }
+
+    @Override
+    public Optional<Long> getFilmVersion(long id) {
+        String sql = "SELECT version FROM film WHERE id = ?";
+        return jdbcTemplate.queryForList(sql, Long.class, id).stream().findFirst();
     }
 
     @Override
@@ -65,49 +163,268 @@ public class FilmDbStorage implements FilmStorage {
         }, keyHolder);
 
         film.setId(keyHolder.getKey().longValue());
+        FilmSegments segments = segmentsOf(film);
+        AfterCommit.run(() -> likesIndex.addFilm(film.getId(), segments));
         return film;
     }
 
     @Override
     public Film updateFilm(Film film) {
-        String sql = "UPDATE film SET name = ?, description = ?, releaseDate = ?, duration = ?, rating_id = ? WHERE id = ?";
-        jdbcTemplate.update(sql,
+        String sql = "UPDATE film SET name = ?, description = ?, releaseDate = ?, duration = ?, rating_id = ?, " +
+                "version = version + 1 WHERE id = ?";
+        int updated = jdbcTemplate.update(sql,
                 film.getName(),
                 film.getDescription(),
                 film.getReleaseDate(),
                 film.getDuration(),
                 film.getMpa().getId(),
                 film.getId());
+        if (updated == 0) {
+            throw new NotFoundException("Фильм с ID " + film.getId() + " не найден");
+        }
+        FilmSegments segments = segmentsOf(film);
+        AfterCommit.run(() -> likesIndex.updateSegments(film.getId(), segments));
+        film.setVersion(getFilmVersion(film.getId()).orElse(0L));
         return film;
     }
 
+    @Override
+    public List<Film> createFilms(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        String sql = "INSERT INTO film (name, description, releaseDate, duration, rating_id) VALUES (?, ?, ?, ?, ?)";
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement stmt = connection.prepareStatement(sql, new String[]{"id"})) {
+                for (Film film : films) {
+                    stmt.setString(1, film.getName());
+                    stmt.setString(2, film.getDescription());
+                    stmt.setDate(3, Date.valueOf(film.getReleaseDate()));
+                    stmt.setInt(4, film.getDuration());
+                    stmt.setInt(5, film.getMpa().getId());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                try (ResultSet keys = stmt.getGeneratedKeys()) {
+                    for (Film film : films) {
+                        if (!keys.next()) {
+                            throw new SQLException("Не получены ID для всех вставленных фильмов");
+                        }
+                        film.setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+
+        List<Object[]> genreArgs = new ArrayList<>();
+        for (Film film : films) {
+            for (int genreId : segmentsOf(film).genreIds()) {
+                genreArgs.add(new Object[]{film.getId(), genreId});
+            }
+        }
+        if (!genreArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO genres_film (film_id, genre_id) VALUES (?, ?)", genreArgs);
+        }
+        Map<Long, FilmSegments> segments = new HashMap<>(films.size() * 2);
+        films.forEach(film -> segments.put(film.getId(), segmentsOf(film)));
+        AfterCommit.run(() -> segments.forEach(likesIndex::addFilm));
+        return films;
+    }
+
     @Override
     public void deleteFilm(long id) {
-        String sql = "DELETE FROM film WHERE id = ?";
-        jdbcTemplate.update(sql, id);
+        jdbcTemplate.update("DELETE FROM likes WHERE film_id = ?", id);
+        jdbcTemplate.update("DELETE FROM genres_film WHERE film_id = ?", id);
+        if (jdbcTemplate.update("DELETE FROM film WHERE id = ?", id) > 0) {
+            AfterCommit.run(() -> likesIndex.removeFilm(id));
+        }
     }
 
     @Override
-    public void addLike(long filmId, long userId) {
-        String sql = "INSERT INTO likes (film_id, user_id) VALUES (?, ?)";
-        jdbcTemplate.update(sql, filmId, userId);
+    public boolean addLike(long filmId, long userId) {
+        if (likeWriteBuffer != null) {
+            checkLikeReferences(filmId, userId);
+            return likeWriteBuffer.submit(filmId, userId, true, () -> likeExists(filmId, userId));
+        }
+        if (jdbcTemplate.update(LikeWriteBuffer.MERGE_LIKE_SQL, filmId, userId) > 0) {
+            AfterCommit.run(() -> likesIndex.increment(filmId));
+            return true;
+        }
+        return false;
     }
 
     @Override
-    public void removeLike(long filmId, long userId) {
+    public boolean removeLike(long filmId, long userId) {
+        if (likeWriteBuffer != null) {
+            checkLikeReferences(filmId, userId);
+            return likeWriteBuffer.submit(filmId, userId, false, () -> likeExists(filmId, userId));
+        }
         String sql = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
-        jdbcTemplate.update(sql, filmId, userId);
+        if (jdbcTemplate.update(sql, filmId, userId) > 0) {
+            AfterCommit.run(() -> likesIndex.decrement(filmId));
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void removeUserLikes(long userId) {
+        List<Long> filmIds = jdbcTemplate.queryForList("SELECT film_id FROM likes WHERE user_id = ?", Long.class,
+                userId);
+        jdbcTemplate.update("DELETE FROM likes WHERE user_id = ?", userId);
+        AfterCommit.run(() -> filmIds.forEach(likesIndex::decrement));
+    }
+
+    @Override
+    public void flushPendingLikes() {
+        if (likeWriteBuffer != null) {
+            likeWriteBuffer.flush();
+        }
+    }
+
+    /**
+     * Пишет в таблицу напрямую, минуя буфер отложенной записи: пакет и так сбрасывается одним обращением к БД.
+     * Отложенные лайки вызывающий сбрасывает заранее через flushPendingLikes.
+     */
+    @Override
+    public List<Like> addLikes(List<Like> likes) {
+        if (likes.isEmpty()) {
+            return likes;
+        }
+        List<Object[]> batchArgs = likes.stream()
+                .map(like -> new Object[]{like.getFilmId(), like.getUserId()})
+                .collect(Collectors.toList());
+        int[] updated = jdbcTemplate.batchUpdate(LikeWriteBuffer.MERGE_LIKE_SQL, batchArgs);
+        List<Like> added = new ArrayList<>(likes.size());
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] > 0) {
+                added.add(likes.get(i));
+            }
+        }
+        AfterCommit.run(() -> added.forEach(like -> likesIndex.increment(like.getFilmId())));
+        return added;
+    }
+
+    // При отложенной записи нарушение внешнего ключа проявится только при сбросе, поэтому проверяем заранее
+    private void checkLikeReferences(long filmId, long userId) {
+        String sql = "SELECT (SELECT COUNT(*) FROM film WHERE id = ?) + (SELECT COUNT(*) FROM users WHERE id = ?)";
+        if (jdbcTemplate.queryForObject(sql, Integer.class, filmId, userId) < 2) {
+            throw new DataIntegrityViolationException(
+                    "Фильм " + filmId + " или пользователь " + userId + " не существует");
+        }
+    }
+
+    private boolean likeExists(long filmId, long userId) {
+        String sql = "SELECT COUNT(*) FROM likes WHERE film_id = ? AND user_id = ?";
+        return jdbcTemplate.queryForObject(sql, Integer.class, filmId, userId) > 0;
     }
 
     @Override
     public List<Film> getPopularFilms(int count) {
-        String sql = "SELECT f.*, r.name as rating_name FROM film f " +
-                "LEFT JOIN ratings r ON f.rating_id = r.rating_id " +
+        return getPopularFilms(count, null, null);
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer year) {
+        return getFilmsByIds(getPopularFilmIds(count, genreId, year));
+    }
+
+    @Override
+    public List<Long> getPopularFilmIds(int count, Integer genreId, Integer year) {
+        if (likeWriteBuffer != null) {
+            return likeWriteBuffer.readWithPending(deltas -> likesIndex.top(count, genreId, year, deltas));
+        }
+        return likesIndex.top(count, genreId, year);
+    }
+
+    private void applyFlushedLikes(long filmId, int delta) {
+        likesIndex.adjust(filmId, delta);
+    }
+
+    @Override
+    public Map<Long, Integer> getLikeCounts(Collection<Long> filmIds) {
+        Map<Long, Integer> result = new HashMap<>(filmIds.size() * 2);
+        for (Long filmId : filmIds) {
+            result.put(filmId, likesIndex.getLikes(filmId));
+        }
+        return result;
+    }
+
+    @Override
+    public String getCatalogFingerprint() {
+        String sql = "SELECT COUNT(*), COALESCE(MAX(id), 0), COALESCE(SUM(version), 0) FROM film";
+        return jdbcTemplate.queryForObject(sql, (rs, rowNum) ->
+                rs.getLong(1) + ":" + rs.getLong(2) + ":" + rs.getLong(3));
+    }
+
+    @Override
+    public void forEachLike(LikeConsumer consumer) {
+        jdbcTemplate.query("SELECT film_id, user_id FROM likes", rs -> {
+            consumer.accept(rs.getLong(1), rs.getLong(2));
+        });
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Long[] distinctIds = ids.stream().distinct().toArray(Long[]::new);
+        Map<Long, Film> filmsById = jdbcTemplate.query(FILMS_BY_IDS_SQL, this::mapRowToFilmWithoutGenres,
+                        (Object) distinctIds)
+                .stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity()));
+        return ids.stream()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private void queryHydratedFilms(String sql, Consumer<Film> consumer, Object... args) {
+        FilmRowAggregator aggregator = new FilmRowAggregator(consumer);
+        jdbcTemplate.query(sql, aggregator, args);
+        aggregator.finish();
+    }
+
+    private Map<Long, Integer> loadLikeCounts() {
+        String sql = "SELECT f.id, COUNT(l.user_id) AS likes_count FROM film f " +
                 "LEFT JOIN likes l ON f.id = l.film_id " +
-                "GROUP BY f.id " +
-                "ORDER BY COUNT(l.user_id) DESC " +
-                "LIMIT ?";
-        return jdbcTemplate.query(sql, this::mapRowToFilmWithoutGenres, count);
+                "GROUP BY f.id";
+        Map<Long, Integer> result = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            result.put(rs.getLong("id"), rs.getInt("likes_count"));
+        });
+        return result;
+    }
+
+    private Map<Long, FilmSegments> loadSegments() {
+        String sql = "SELECT f.id, f.releaseDate, gf.genre_id FROM film f " +
+                "LEFT JOIN genres_film gf ON f.id = gf.film_id " +
+                "ORDER BY f.id, gf.genre_id";
+        Map<Long, Integer> years = new HashMap<>();
+        Map<Long, List<Integer>> genres = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            long filmId = rs.getLong("id");
+            years.put(filmId, rs.getDate("releaseDate").toLocalDate().getYear());
+            List<Integer> filmGenres = genres.computeIfAbsent(filmId, id -> new ArrayList<>());
+            int genreId = rs.getInt("genre_id");
+            if (!rs.wasNull()) {
+                filmGenres.add(genreId);
+            }
+        });
+        Map<Long, FilmSegments> result = new HashMap<>(years.size());
+        years.forEach((filmId, year) -> result.put(filmId, new FilmSegments(year,
+                genres.get(filmId).stream().mapToInt(Integer::intValue).distinct().toArray())));
+        return result;
+    }
+
+    private static FilmSegments segmentsOf(Film film) {
+        int[] genreIds = film.getGenres() == null ? new int[0] : film.getGenres().stream()
+                .mapToInt(Genre::getId)
+                .distinct()
+                .toArray();
+        return new FilmSegments(film.getReleaseDate().getYear(), genreIds);
     }
 
     private Film mapRowToFilmWithoutGenres(ResultSet rs, int rowNum) throws SQLException {
@@ -118,7 +435,45 @@ public class FilmDbStorage implements FilmStorage {
                 .releaseDate(rs.getDate("releaseDate").toLocalDate())
                 .duration(rs.getInt("duration"))
                 .mpa(new Ratings(rs.getInt("rating_id"), rs.getString("rating_name")))
+                .version(rs.getLong("version"))
                 .build();
     }
 
+    /**
+     * Собирает фильмы из строк соединения film-ratings-genres, упорядоченных по f.id.
+     */
+    private class FilmRowAggregator implements RowCallbackHandler {
+        private final Consumer<Film> consumer;
+        private Film current;
+        private int rowNum;
+
+        FilmRowAggregator(Consumer<Film> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long filmId = rs.getLong("id");
+            if (current == null || current.getId() != filmId) {
+                if (current != null) {
+                    consumer.accept(current);
+                }
+                current = mapRowToFilmWithoutGenres(rs, rowNum);
+                current.setGenres(new ArrayList<>());
+            }
+            rowNum++;
+            int genreId = rs.getInt("genre_id");
+            if (!rs.wasNull()) {
+                current.getGenres().add(new Genre(genreId, rs.getString("genre_name")));
+            }
+        }
+
+        void finish() {
+            if (current != null) {
+                consumer.accept(current);
+                current = null;
+            }
+        }
+    }
+
 }
@@ -0,0 +1,300 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Отложенная пакетная запись лайков: операции копятся в ограниченной очереди,
+ * схлопываются по паре (фильм, пользователь) и сбрасываются в БД пачками.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.likes.write-behind.enabled", havingValue = "true")
+public class LikeWriteBuffer {
+    static final String MERGE_LIKE_SQL = "MERGE INTO likes l " +
+            "USING (VALUES (CAST(? AS INT), CAST(? AS INT))) s(film_id, user_id) " +
+            "ON l.film_id = s.film_id AND l.user_id = s.user_id " +
+            "WHEN NOT MATCHED THEN INSERT (film_id, user_id) VALUES (s.film_id, s.user_id)";
+    private static final String DELETE_LIKE_SQL = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate batchTransaction;
+    private final int capacity;
+    private final int batchSize;
+    private final long offerTimeoutMs;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Object flushMonitor = new Object();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "like-write-buffer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Map<LikeKey, Change> pending = new LinkedHashMap<>();
+    private Map<LikeKey, Change> inFlight = new LinkedHashMap<>();
+    private long flushGeneration;
+    private volatile FlushListener listener = (filmId, delta) -> {
+    };
+
+    @Autowired
+    public LikeWriteBuffer(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                           @Value("${filmorate.likes.write-behind.capacity:10000}") int capacity,
+                           @Value("${filmorate.likes.write-behind.batch-size:500}") int batchSize,
+                           @Value("${filmorate.likes.write-behind.flush-interval-ms:200}") long flushIntervalMs,
+                           @Value("${filmorate.likes.write-behind.offer-timeout-ms:1000}") long offerTimeoutMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Пачка пишется в своей транзакции (или в точке сохранения, если сброс вызван внутри транзакции):
+        // иначе при ошибке в одной строке остальные строки пачки остаются записанными
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.batchTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.offerTimeoutMs = offerTimeoutMs;
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void setListener(FlushListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Ставит в очередь лайк (like = true) или его снятие и возвращает, меняет ли это текущее состояние пары.
+     * storedState читает состояние пары в таблице; оно нужно, только если пары ещё нет в буфере.
+     */
+    public boolean submit(long filmId, long userId, boolean like, BooleanSupplier storedState) {
+        LikeKey key = new LikeKey(filmId, userId);
+        boolean changed;
+        boolean flushInCaller;
+        lock.lock();
+        try {
+            awaitCapacity(key);
+            boolean stored = false;
+            long readAt = -1;
+            // Пока пары нет в буфере, её состояние в таблице меняет только завершившийся сброс:
+            // если он успел пройти во время чтения, читаем заново
+            while (bufferedChange(key) == null && readAt != flushGeneration) {
+                readAt = flushGeneration;
+                lock.unlock();
+                try {
+                    stored = storedState.getAsBoolean();
+                } finally {
+                    lock.lock();
+                }
+            }
+            Change buffered = bufferedChange(key);
+            boolean base = buffered == null ? stored : buffered.base();
+            changed = (buffered == null ? stored : buffered.target()) != like;
+            flushInCaller = pending.size() >= capacity && !pending.containsKey(key);
+            if (base == like && !inFlight.containsKey(key)) {
+                pending.remove(key);
+            } else {
+                pending.put(key, new Change(base, like));
+            }
+            if (pending.size() >= batchSize) {
+                flusher.execute(this::flushQuietly);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (flushInCaller) {
+            // Очередь переполнена и фоновый сброс не успевает — пишем в потоке запроса
+            flush();
+        }
+        return changed;
+    }
+
+    /**
+     * Вызывает reader с ещё не применёнными к индексу изменениями лайков по фильмам,
+     * удерживая буфер от применения новых результатов сброса.
+     */
+    public <T> T readWithPending(Function<Map<Long, Integer>, T> reader) {
+        lock.lock();
+        try {
+            Map<Long, Integer> deltas = new HashMap<>();
+            pending.forEach((key, change) -> addDelta(deltas, key, change));
+            inFlight.forEach((key, change) -> {
+                if (!pending.containsKey(key)) {
+                    addDelta(deltas, key, change);
+                }
+            });
+            return reader.apply(deltas);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void flush() {
+        synchronized (flushMonitor) {
+            List<Map.Entry<LikeKey, Change>> batch;
+            lock.lock();
+            try {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                inFlight = pending;
+                pending = new LinkedHashMap<>();
+                batch = new ArrayList<>(inFlight.entrySet());
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            Map<Long, Integer> applied = new HashMap<>();
+            Set<LikeKey> failed = new HashSet<>();
+            for (int from = 0; from < batch.size(); from += batchSize) {
+                write(batch.subList(from, Math.min(batch.size(), from + batchSize)), applied, failed);
+            }
+
+            lock.lock();
+            try {
+                applied.forEach((filmId, delta) -> listener.onFlushed(filmId, delta));
+                // Изменения, пришедшие во время сброса, теперь отсчитываются от записанного состояния
+                inFlight.forEach((key, written) -> {
+                    Change next = pending.get(key);
+                    if (next != null) {
+                        boolean stored = failed.contains(key) ? written.base() : written.target();
+                        if (stored == next.target()) {
+                            pending.remove(key);
+                        } else {
+                            pending.put(key, new Change(stored, next.target()));
+                        }
+                    }
+                });
+                inFlight = new LinkedHashMap<>();
+                flushGeneration++;
+            } finally {
+                lock.unlock();
+            }
+            log.debug("Сброшено {} изменений лайков", batch.size());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        log.info("Буфер лайков остановлен, очередь сброшена");
+    }
+
+    private void awaitCapacity(LikeKey key) {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(offerTimeoutMs);
+        try {
+            while (pending.size() >= capacity && !pending.containsKey(key) && nanos > 0) {
+                nanos = notFull.awaitNanos(nanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Change bufferedChange(LikeKey key) {
+        Change change = pending.get(key);
+        return change == null ? inFlight.get(key) : change;
+    }
+
+    private static void addDelta(Map<Long, Integer> deltas, LikeKey key, Change change) {
+        if (change.target() != change.base()) {
+            deltas.merge(key.filmId(), change.target() ? 1 : -1, Integer::sum);
+        }
+    }
+
+    private void write(List<Map.Entry<LikeKey, Change>> chunk, Map<Long, Integer> applied, Set<LikeKey> failed) {
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        List<LikeKey> insertKeys = new ArrayList<>();
+        List<LikeKey> deleteKeys = new ArrayList<>();
+        for (Map.Entry<LikeKey, Change> entry : chunk) {
+            LikeKey key = entry.getKey();
+            if (entry.getValue().target() == entry.getValue().base()) {
+                continue;
+            }
+            if (entry.getValue().target()) {
+                inserts.add(new Object[]{key.filmId(), key.userId()});
+                insertKeys.add(key);
+            } else {
+                deletes.add(new Object[]{key.filmId(), key.userId()});
+                deleteKeys.add(key);
+            }
+        }
+        execute(MERGE_LIKE_SQL, inserts, insertKeys, 1, applied, failed);
+        execute(DELETE_LIKE_SQL, deletes, deleteKeys, -1, applied, failed);
+    }
+
+    private void execute(String sql, List<Object[]> args, List<LikeKey> keys, int delta,
+                         Map<Long, Integer> applied, Set<LikeKey> failed) {
+        if (args.isEmpty()) {
+            return;
+        }
+        int[] counts;
+        try {
+            counts = batchTransaction.execute(status -> jdbcTemplate.batchUpdate(sql, args));
+        } catch (DataAccessException e) {
+            // Пачка откатилась целиком (например, фильм удалён) — повторяем построчно
+            counts = new int[args.size()];
+            for (int i = 0; i < args.size(); i++) {
+                try {
+                    counts[i] = jdbcTemplate.update(sql, args.get(i));
+                } catch (DataAccessException rowError) {
+                    failed.add(keys.get(i));
+                    log.warn("Не удалось записать лайк {}: {}", keys.get(i), rowError.getMessage());
+                }
+            }
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                applied.merge(keys.get(i).filmId(), delta, Integer::sum);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Ошибка при сбросе буфера лайков", e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface FlushListener {
+        void onFlushed(long filmId, int delta);
+    }
+
+    private record LikeKey(long filmId, long userId) {
+    }
+
+    /**
+     * Состояние пары в таблице до попадания в буфер (base) и требуемое состояние (target).
+     */
+    private record Change(boolean base, boolean target) {
+    }
+}
@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Периодическая сверка индекса лайков с таблицей likes. Расхождение (например, после правки таблицы
+ * в обход приложения) исправляется перестроением индекса и считается в метрике filmorate.likes.index.repairs.
+ * При нулевом интервале проверка отключена.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.engine", havingValue = "jdbc", matchIfMissing = true)
+public class LikesIndexConsistencyCheck {
+    private final FilmDbStorage filmStorage;
+    private final long intervalMinutes;
+    private final Counter repairs;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "likes-index-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public LikesIndexConsistencyCheck(
+            FilmDbStorage filmStorage,
+            MeterRegistry registry,
+            @Value("${filmorate.likes.index-check-interval-minutes:30}") long intervalMinutes) {
+        this.filmStorage = filmStorage;
+        this.intervalMinutes = intervalMinutes;
+        this.repairs = Counter.builder("filmorate.likes.index.repairs").register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (intervalMinutes <= 0) {
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(this::check, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void check() {
+        try {
+            if (!filmStorage.checkLikesIndexConsistency()) {
+                repairs.increment();
+            }
+        } catch (RuntimeException e) {
+            log.error("Ошибка при сверке индекса лайков", e);
+        }
+    }
+}
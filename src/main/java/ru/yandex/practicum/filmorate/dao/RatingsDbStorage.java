@@ -1,7 +1,9 @@
 package ru.yandex.practicum.filmorate.dao;
 
 
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.Ratings;
@@ -13,35 +15,57 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
+@ConditionalOnProperty(name = "filmorate.storage.engine", havingValue = "jdbc", matchIfMissing = true)
 public class RatingsDbStorage implements RatingsStorage {
 
     private final JdbcTemplate jdbcTemplate;
+    private final ReferenceDataCache<Ratings> cache = new ReferenceDataCache<>(Ratings::getId);
 
     @Autowired
     public RatingsDbStorage(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    @PostConstruct
+    @Override
+    public void refresh() {
+        String sql = "SELECT * FROM ratings ORDER BY rating_id";
+        cache.load(jdbcTemplate.query(sql, this::mapRowToRating));
+    }
+
     @Override
     public List<Ratings> getAllRatings() {
-        String sql = "SELECT * FROM ratings";
-        return jdbcTemplate.query(sql, this::mapRowToRating);
+        return cache.getAll();
     }
 
     @Override
     public Optional<Ratings> getRatingById(int id) {
+        Optional<Ratings> cached = cache.get(id);
+        if (cached.isPresent()) {
+            return cached;
+        }
         String sql = "SELECT * FROM ratings WHERE rating_id = ?";
         try {
-            return Optional.ofNullable(jdbcTemplate.queryForObject(sql, (rs, rowNum) ->
+            Optional<Ratings> rating = Optional.ofNullable(jdbcTemplate.queryForObject(sql, (rs, rowNum) ->
                     new Ratings(
                             rs.getInt("rating_id"),
                             rs.getString("name")
                     ), id));
+            rating.ifPresent(r -> refresh());
+            return rating;
         } catch (Exception e) {
             return Optional.empty();
         }
     }
 
+    public long getCacheHits() {
+        return cache.getHits();
+    }
+
+    public long getCacheMisses() {
+        return cache.getMisses();
+    }
+
     @Override
     public Ratings getFilmRating(long filmId) {
         String sql = "SELECT r.* FROM ratings r JOIN film f ON r.rating_id = f.rating_id WHERE f.id = ?";
@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+/**
+ * Неизменяемый кэш справочника, индексированный массивом по идентификатору.
+ */
+public class ReferenceDataCache<T> {
+    private final ToIntFunction<T> idExtractor;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong version = new AtomicLong();
+    private volatile Object[] byId = new Object[0];
+    private volatile List<T> all = List.of();
+
+    public ReferenceDataCache(ToIntFunction<T> idExtractor) {
+        this.idExtractor = idExtractor;
+    }
+
+    public void load(List<T> values) {
+        int maxId = values.stream().mapToInt(idExtractor).max().orElse(-1);
+        Object[] table = new Object[maxId + 1];
+        for (T value : values) {
+            int id = idExtractor.applyAsInt(value);
+            if (id >= 0) {
+                table[id] = value;
+            }
+        }
+        byId = table;
+        all = List.copyOf(values);
+        version.incrementAndGet();
+    }
+
+    @SuppressWarnings("unchecked")
+    public Optional<T> get(int id) {
+        Object[] table = byId;
+        T value = id >= 0 && id < table.length ? (T) table[id] : null;
+        if (value == null) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        hits.incrementAndGet();
+        return Optional.of(value);
+    }
+
+    public List<T> getAll() {
+        return all;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+}
@@ -1,31 +1,69 @@
 package ru.yandex.practicum.filmorate.dao;
 
 
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.AfterCommit;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
+/**
+ * Хранилище пользователей в БД. Граф дружбы меняется только после фиксации транзакции (AfterCommit).
+ */
+@Slf4j
 @Repository
-@Qualifier("userDbStorage")
+@ConditionalOnProperty(name = "filmorate.storage.engine", havingValue = "jdbc", matchIfMissing = true)
 public class UserDbStorage implements UserStorage {
+    private static final String MERGE_FRIEND_SQL = "MERGE INTO user_friends uf " +
+            "USING (VALUES (CAST(? AS INT), CAST(? AS INT))) s(user_id, friend_id) " +
+            "ON uf.user_id = s.user_id AND uf.friend_id = s.friend_id " +
+            "WHEN NOT MATCHED THEN INSERT (user_id, friend_id) VALUES (s.user_id, s.friend_id)";
+    // Тот же приём, что в GenreDbStorage: список ID одним параметром-массивом, один текст запроса на любую длину
+    private static final String USERS_BY_IDS_SQL = "SELECT u.* FROM UNNEST(CAST(? AS BIGINT ARRAY)) ids(id) " +
+            "JOIN users u ON u.id = ids.id ORDER BY u.id";
 
     private final JdbcTemplate jdbcTemplate;
+    private final FriendGraph friendGraph;
 
     @Autowired
-    public UserDbStorage(JdbcTemplate jdbcTemplate) {
+    public UserDbStorage(JdbcTemplate jdbcTemplate, Optional<FriendGraph> friendGraph) {
         this.jdbcTemplate = jdbcTemplate;
+        this.friendGraph = friendGraph.orElse(null);
+    }
+
+    @PostConstruct
+    public void rebuildFriendGraph() {
+        if (friendGraph == null) {
+            return;
+        }
+        friendGraph.clear();
+        jdbcTemplate.query("SELECT user_id, friend_id FROM user_friends", rs -> {
+            friendGraph.addEdge(rs.getLong("user_id"), rs.getLong("friend_id"));
+        });
+        log.info("Граф дружбы построен");
     }
 
     @Override
@@ -34,6 +72,20 @@ public class UserDbStorage implements UserStorage {
         return jdbcTemplate.query(sql, this::mapRowToUser);
     }
 
+    @Override
+    public List<User> getUsers(long afterId, int limit) {
+        String sql = "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?";
+        return jdbcTemplate.query(sql, this::mapRowToUser, afterId, limit);
+    }
+
+    @Override
+    public void streamUsers(long afterId, Consumer<User> consumer) {
+        String sql = "SELECT * FROM users WHERE id > ? ORDER BY id";
+        jdbcTemplate.query(sql, rs -> {
+            consumer.accept(mapRowToUser(rs, rs.getRow()));
+        }, afterId);
+    }
+
     @Override
     public Optional<User> getUserById(long id) {
         String sql = "SELECT * FROM users WHERE id = ?";
@@ -44,6 +96,18 @@ public class UserDbStorage implements UserStorage {
         }
     }
 
+    @Override
+    public boolean userExists(long id) {
+        String sql = "SELECT COUNT(*) FROM users WHERE id = ?";
+        return jdbcTemplate.queryForObject(sql, Integer.class, id) > 0;
+    }
+
+    @Override
+    public Optional<Long> getUserVersion(long id) {
+        String sql = "SELECT version FROM users WHERE id = ?";
+        return jdbcTemplate.queryForList(sql, Long.class, id).stream().findFirst();
+    }
+
     @Override
     public User createUser(User user) {
         String sql = "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)";
@@ -64,48 +128,150 @@ public class UserDbStorage implements UserStorage {
 
     @Override
     public User updateUser(User user) {
-        String sql = "UPDATE users SET email = ?, login = ?, name = ?, birthday = ? WHERE id = ?";
+        String sql = "UPDATE users SET email = ?, login = ?, name = ?, birthday = ?, version = version + 1 " +
+                "WHERE id = ?";
         jdbcTemplate.update(sql,
                 user.getEmail(),
                 user.getLogin(),
                 user.getName(),
                 user.getBirthday(),
                 user.getId());
+        user.setVersion(getUserVersion(user.getId()).orElse(0L));
         return user;
     }
 
+    @Override
+    public List<User> createUsers(List<User> users) {
+        if (users.isEmpty()) {
+            return users;
+        }
+        String sql = "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)";
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement stmt = connection.prepareStatement(sql, new String[]{"id"})) {
+                for (User user : users) {
+                    stmt.setString(1, user.getEmail());
+                    stmt.setString(2, user.getLogin());
+                    stmt.setString(3, user.getName());
+                    stmt.setDate(4, Date.valueOf(user.getBirthday()));
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                try (ResultSet keys = stmt.getGeneratedKeys()) {
+                    for (User user : users) {
+                        if (!keys.next()) {
+                            throw new SQLException("Не получены ID для всех вставленных пользователей");
+                        }
+                        user.setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+        return users;
+    }
+
     @Override
     public void deleteUser(long id) {
-        String sql = "DELETE FROM users WHERE id = ?";
-        jdbcTemplate.update(sql, id);
+        // Два запроса вместо OR: каждый идёт по своему индексу
+        jdbcTemplate.update("DELETE FROM user_friends WHERE user_id = ?", id);
+        jdbcTemplate.update("DELETE FROM user_friends WHERE friend_id = ?", id);
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?", id);
+        if (friendGraph != null) {
+            AfterCommit.run(() -> friendGraph.removeUser(id));
+        }
     }
 
     @Override
-    public void addFriend(long userId, long friendId) {
-        String sql = "INSERT INTO user_friends (user_id, friend_id) VALUES (?, ?)";
-        jdbcTemplate.update(sql, userId, friendId);
+    public boolean addFriend(long userId, long friendId) {
+        boolean added = jdbcTemplate.update(MERGE_FRIEND_SQL, userId, friendId) > 0;
+        if (added && friendGraph != null) {
+            AfterCommit.run(() -> friendGraph.addEdge(userId, friendId));
+        }
+        return added;
     }
 
     @Override
-    public void removeFriend(long userId, long friendId) {
+    public boolean removeFriend(long userId, long friendId) {
         String sql = "DELETE FROM user_friends WHERE user_id = ? AND friend_id = ?";
-        jdbcTemplate.update(sql, userId, friendId);
+        boolean removed = jdbcTemplate.update(sql, userId, friendId) > 0;
+        if (removed && friendGraph != null) {
+            AfterCommit.run(() -> friendGraph.removeEdge(userId, friendId));
+        }
+        return removed;
+    }
+
+    @Override
+    public int addFriends(List<Friendship> friendships) {
+        if (friendships.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> batchArgs = friendships.stream()
+                .map(friendship -> new Object[]{friendship.getUserId(), friendship.getFriendId()})
+                .collect(Collectors.toList());
+        int[] updated = jdbcTemplate.batchUpdate(MERGE_FRIEND_SQL, batchArgs);
+        List<Friendship> added = new ArrayList<>(friendships.size());
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] > 0) {
+                added.add(friendships.get(i));
+            }
+        }
+        if (friendGraph != null) {
+            AfterCommit.run(() -> added.forEach(friendship ->
+                    friendGraph.addEdge(friendship.getUserId(), friendship.getFriendId())));
+        }
+        return added.size();
     }
 
     @Override
     public List<User> getFriends(long userId) {
+        if (friendGraph != null) {
+            return getUsersByIds(friendGraph.getFriends(userId));
+        }
         String sql = "SELECT u.* FROM users u JOIN user_friends uf ON u.id = uf.friend_id WHERE uf.user_id = ?";
         return jdbcTemplate.query(sql, this::mapRowToUser, userId);
     }
 
     @Override
     public List<User> getCommonFriends(long userId, long otherUserId) {
+        if (friendGraph != null) {
+            return getUsersByIds(friendGraph.getCommonFriends(userId, otherUserId));
+        }
         String sql = "SELECT u.* FROM users u JOIN user_friends uf1 ON u.id = uf1.friend_id " +
                 "JOIN user_friends uf2 ON u.id = uf2.friend_id " +
                 "WHERE uf1.user_id = ? AND uf2.user_id = ?";
         return jdbcTemplate.query(sql, this::mapRowToUser, userId, otherUserId);
     }
 
+    @Override
+    public List<User> getFriendSuggestions(long userId, int limit) {
+        if (friendGraph != null) {
+            long[] ranked = friendGraph.suggestFriends(userId, limit);
+            Map<Long, User> usersById = getUsersByIds(ranked).stream()
+                    .collect(Collectors.toMap(User::getId, Function.identity()));
+            return Arrays.stream(ranked)
+                    .mapToObj(usersById::get)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+        }
+        String sql = "SELECT u.*, COUNT(*) AS mutual FROM user_friends f1 " +
+                "JOIN user_friends f2 ON f1.friend_id = f2.user_id " +
+                "JOIN users u ON u.id = f2.friend_id " +
+                "WHERE f1.user_id = ? AND f2.friend_id <> ? " +
+                "AND NOT EXISTS (SELECT 1 FROM user_friends d WHERE d.user_id = ? AND d.friend_id = f2.friend_id) " +
+                "GROUP BY u.id " +
+                "ORDER BY mutual DESC, u.id " +
+                "LIMIT ?";
+        return jdbcTemplate.query(sql, this::mapRowToUser, userId, userId, userId, limit);
+    }
+
+    private List<User> getUsersByIds(long[] ids) {
+        if (ids.length == 0) {
+            return new ArrayList<>();
+        }
+        Long[] distinctIds = Arrays.stream(ids).distinct().boxed().toArray(Long[]::new);
+        return jdbcTemplate.query(USERS_BY_IDS_SQL, this::mapRowToUser, (Object) distinctIds);
+    }
+
     private User mapRowToUser(ResultSet rs, int rowNum) throws SQLException {
         return User.builder()
                 .id(rs.getLong("id"))
@@ -113,6 +279,7 @@ public class UserDbStorage implements UserStorage {
                 .login(rs.getString("login"))
                 .name(rs.getString("name"))
                 .birthday(rs.getDate("birthday").toLocalDate())
+                .version(rs.getLong("version"))
                 .build();
     }
 }
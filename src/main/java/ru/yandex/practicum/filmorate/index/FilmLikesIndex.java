@@ -0,0 +1,217 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Счётчики лайков фильмов с упорядоченным индексом для выдачи топ-N без обращения к БД.
+ * Помимо общего рейтинга ведутся сегменты по жанрам и годам выпуска.
+ */
+public class FilmLikesIndex {
+    private static final Comparator<Entry> RANKING = Comparator.comparingInt(Entry::likes).reversed()
+            .thenComparingLong(Entry::filmId);
+    private static final FilmSegments NO_SEGMENTS = new FilmSegments(0, new int[0]);
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final Map<Long, FilmSegments> segmentsByFilm = new HashMap<>();
+    private final NavigableSet<Entry> ranking = new TreeSet<>(RANKING);
+    private final Map<Integer, NavigableSet<Entry>> rankingByGenre = new HashMap<>();
+    private final Map<Integer, NavigableSet<Entry>> rankingByYear = new HashMap<>();
+
+    public synchronized void rebuild(Map<Long, Integer> likesByFilm, Map<Long, FilmSegments> segments) {
+        entries.clear();
+        segmentsByFilm.clear();
+        ranking.clear();
+        rankingByGenre.clear();
+        rankingByYear.clear();
+        segmentsByFilm.putAll(segments);
+        likesByFilm.forEach((filmId, likes) -> put(new Entry(filmId, likes)));
+    }
+
+    public synchronized void addFilm(long filmId, FilmSegments segments) {
+        if (!entries.containsKey(filmId)) {
+            segmentsByFilm.put(filmId, segments);
+            put(new Entry(filmId, 0));
+        } else {
+            updateSegments(filmId, segments);
+        }
+    }
+
+    public synchronized void updateSegments(long filmId, FilmSegments segments) {
+        Entry entry = entries.get(filmId);
+        if (entry == null) {
+            return;
+        }
+        remove(entry);
+        segmentsByFilm.put(filmId, segments);
+        put(entry);
+    }
+
+    public synchronized void removeFilm(long filmId) {
+        Entry entry = entries.get(filmId);
+        if (entry != null) {
+            remove(entry);
+        }
+        segmentsByFilm.remove(filmId);
+    }
+
+    public synchronized void increment(long filmId) {
+        adjust(filmId, 1);
+    }
+
+    public synchronized void decrement(long filmId) {
+        adjust(filmId, -1);
+    }
+
+    public synchronized void adjust(long filmId, int delta) {
+        Entry current = entries.get(filmId);
+        int likes = current == null ? 0 : current.likes();
+        if (current != null) {
+            remove(current);
+        }
+        put(new Entry(filmId, Math.max(0, likes + delta)));
+    }
+
+    public synchronized int getLikes(long filmId) {
+        Entry entry = entries.get(filmId);
+        return entry == null ? 0 : entry.likes();
+    }
+
+    public synchronized List<Long> top(int count) {
+        return top(count, null, null);
+    }
+
+    /**
+     * Топ-N с необязательными фильтрами по жанру и году. При обоих фильтрах обходится меньший
+     * из двух сегментов, а принадлежность ко второму проверяется по метаданным фильма.
+     */
+    public synchronized List<Long> top(int count, Integer genreId, Integer year) {
+        List<Long> result = new ArrayList<>(Math.min(count, entries.size()));
+        Iterator<Entry> iterator = segment(genreId, year).iterator();
+        while (result.size() < count && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (matches(entry.filmId(), genreId, year)) {
+                result.add(entry.filmId());
+            }
+        }
+        return result;
+    }
+
+    public synchronized List<Long> top(int count, Map<Long, Integer> deltas) {
+        return top(count, null, null, deltas);
+    }
+
+    /**
+     * Топ-N с учётом ещё не записанных изменений: deltas — прибавка к числу лайков по фильмам.
+     */
+    public synchronized List<Long> top(int count, Integer genreId, Integer year, Map<Long, Integer> deltas) {
+        if (deltas.isEmpty()) {
+            return top(count, genreId, year);
+        }
+        long decreasing = deltas.values().stream().filter(delta -> delta < 0).count();
+        Map<Long, Integer> candidates = new HashMap<>();
+        Iterator<Entry> iterator = segment(genreId, year).iterator();
+        while (candidates.size() < count + decreasing && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (matches(entry.filmId(), genreId, year)) {
+                candidates.put(entry.filmId(), entry.likes());
+            }
+        }
+        deltas.forEach((filmId, delta) -> {
+            Entry entry = entries.get(filmId);
+            if (entry != null && matches(filmId, genreId, year)) {
+                candidates.put(filmId, entry.likes());
+            }
+        });
+        return candidates.entrySet().stream()
+                .map(candidate -> new Entry(candidate.getKey(),
+                        Math.max(0, candidate.getValue() + deltas.getOrDefault(candidate.getKey(), 0))))
+                .sorted(RANKING)
+                .limit(count)
+                .map(Entry::filmId)
+                .collect(Collectors.toList());
+    }
+
+    public synchronized Map<Long, Integer> snapshot() {
+        Map<Long, Integer> result = new HashMap<>(entries.size());
+        entries.forEach((filmId, entry) -> result.put(filmId, entry.likes()));
+        return result;
+    }
+
+    private NavigableSet<Entry> segment(Integer genreId, Integer year) {
+        if (genreId == null && year == null) {
+            return ranking;
+        }
+        NavigableSet<Entry> byGenre = genreId == null ? null
+                : rankingByGenre.getOrDefault(genreId, Collections.emptyNavigableSet());
+        NavigableSet<Entry> byYear = year == null ? null
+                : rankingByYear.getOrDefault(year, Collections.emptyNavigableSet());
+        if (byGenre == null) {
+            return byYear;
+        }
+        if (byYear == null || byGenre.size() <= byYear.size()) {
+            return byGenre;
+        }
+        return byYear;
+    }
+
+    private boolean matches(long filmId, Integer genreId, Integer year) {
+        FilmSegments segments = segmentsByFilm.getOrDefault(filmId, NO_SEGMENTS);
+        return (year == null || segments.year() == year)
+                && (genreId == null || Arrays.stream(segments.genreIds()).anyMatch(id -> id == genreId));
+    }
+
+    private void put(Entry entry) {
+        entries.put(entry.filmId(), entry);
+        ranking.add(entry);
+        FilmSegments segments = segmentsByFilm.get(entry.filmId());
+        if (segments == null) {
+            return;
+        }
+        rankingByYear.computeIfAbsent(segments.year(), year -> new TreeSet<>(RANKING)).add(entry);
+        for (int genreId : segments.genreIds()) {
+            rankingByGenre.computeIfAbsent(genreId, id -> new TreeSet<>(RANKING)).add(entry);
+        }
+    }
+
+    private void remove(Entry entry) {
+        entries.remove(entry.filmId());
+        ranking.remove(entry);
+        FilmSegments segments = segmentsByFilm.get(entry.filmId());
+        if (segments == null) {
+            return;
+        }
+        removeFromSegment(rankingByYear, segments.year(), entry);
+        for (int genreId : segments.genreIds()) {
+            removeFromSegment(rankingByGenre, genreId, entry);
+        }
+    }
+
+    private static void removeFromSegment(Map<Integer, NavigableSet<Entry>> segments, int key, Entry entry) {
+        NavigableSet<Entry> segment = segments.get(key);
+        if (segment != null) {
+            segment.remove(entry);
+            if (segment.isEmpty()) {
+                segments.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Год выпуска и жанры фильма, по которым он попадает в сегменты рейтинга.
+     */
+    public record FilmSegments(int year, int[] genreIds) {
+    }
+
+    private record Entry(long filmId, int likes) {
+    }
+}
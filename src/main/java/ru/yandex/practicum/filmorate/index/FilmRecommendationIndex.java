@@ -0,0 +1,269 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Индекс совместных лайков «фильм-фильм» для рекомендаций «кому понравилось то же, что и вам».
+ * Обновляется инкрементально на каждый лайк и периодически перестраивается целиком.
+ * Включается свойством filmorate.recommendations.enabled.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.recommendations.enabled", havingValue = "true")
+public class FilmRecommendationIndex {
+    private static final long[] EMPTY = new long[0];
+    private static final int REBUILD_SPLIT_THRESHOLD = 64;
+
+    private final FilmStorage filmStorage;
+    private final long rebuildIntervalMinutes;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "film-recommendation-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Map<Long, long[]> likesByUser = new HashMap<>();
+    private Map<Long, SparseVector> cooccurrence = new HashMap<>();
+    private List<long[]> journal;
+
+    @Autowired
+    public FilmRecommendationIndex(
+            FilmStorage filmStorage,
+            @Value("${filmorate.recommendations.rebuild-interval-minutes:60}") long rebuildIntervalMinutes) {
+        this.filmStorage = filmStorage;
+        this.rebuildIntervalMinutes = rebuildIntervalMinutes;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        rebuild();
+        scheduler.scheduleWithFixedDelay(this::rebuildQuietly, rebuildIntervalMinutes, rebuildIntervalMinutes,
+                TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public synchronized void onLike(long filmId, long userId) {
+        if (journal != null) {
+            journal.add(new long[]{1, filmId, userId});
+        }
+        long[] liked = likesByUser.getOrDefault(userId, EMPTY);
+        int position = Arrays.binarySearch(liked, filmId);
+        if (position >= 0) {
+            return;
+        }
+        for (long otherFilmId : liked) {
+            vector(filmId).add(otherFilmId, 1);
+            vector(otherFilmId).add(filmId, 1);
+        }
+        int insertAt = -position - 1;
+        long[] updated = new long[liked.length + 1];
+        System.arraycopy(liked, 0, updated, 0, insertAt);
+        updated[insertAt] = filmId;
+        System.arraycopy(liked, insertAt, updated, insertAt + 1, liked.length - insertAt);
+        likesByUser.put(userId, updated);
+    }
+
+    public synchronized void onUnlike(long filmId, long userId) {
+        if (journal != null) {
+            journal.add(new long[]{-1, filmId, userId});
+        }
+        long[] liked = likesByUser.getOrDefault(userId, EMPTY);
+        int position = Arrays.binarySearch(liked, filmId);
+        if (position < 0) {
+            return;
+        }
+        long[] updated = new long[liked.length - 1];
+        System.arraycopy(liked, 0, updated, 0, position);
+        System.arraycopy(liked, position + 1, updated, position, liked.length - position - 1);
+        for (long otherFilmId : updated) {
+            decrement(filmId, otherFilmId);
+            decrement(otherFilmId, filmId);
+        }
+        if (updated.length == 0) {
+            likesByUser.remove(userId);
+        } else {
+            likesByUser.put(userId, updated);
+        }
+    }
+
+    public synchronized void removeFilm(long filmId) {
+        List<Long> users = new ArrayList<>();
+        likesByUser.forEach((userId, liked) -> {
+            if (Arrays.binarySearch(liked, filmId) >= 0) {
+                users.add(userId);
+            }
+        });
+        users.forEach(userId -> onUnlike(filmId, userId));
+    }
+
+    public synchronized void removeUser(long userId) {
+        long[] liked = likesByUser.getOrDefault(userId, EMPTY);
+        for (long filmId : liked) {
+            onUnlike(filmId, userId);
+        }
+    }
+
+    public synchronized long[] recommend(long userId, int limit) {
+        long[] liked = likesByUser.getOrDefault(userId, EMPTY);
+        LongIntCounter scores = new LongIntCounter();
+        for (long filmId : liked) {
+            SparseVector vector = cooccurrence.get(filmId);
+            if (vector != null) {
+                vector.addTo(scores, liked);
+            }
+        }
+        return scores.top(limit);
+    }
+
+    /**
+     * Полная перестройка по таблице лайков. Векторы фильмов считаются параллельно в fork-join пуле;
+     * изменения, пришедшие во время перестройки, накапливаются в журнале и применяются после неё.
+     */
+    public void rebuild() {
+        synchronized (this) {
+            journal = new ArrayList<>();
+        }
+        Map<Long, LongArrayBuilder> usersByFilmBuilder = new HashMap<>();
+        Map<Long, LongArrayBuilder> likesByUserBuilder = new HashMap<>();
+        filmStorage.forEachLike((filmId, userId) -> {
+            usersByFilmBuilder.computeIfAbsent(filmId, id -> new LongArrayBuilder()).add(userId);
+            likesByUserBuilder.computeIfAbsent(userId, id -> new LongArrayBuilder()).add(filmId);
+        });
+        Map<Long, long[]> newLikesByUser = new HashMap<>(likesByUserBuilder.size() * 2);
+        likesByUserBuilder.forEach((userId, builder) -> newLikesByUser.put(userId, builder.toSortedArray()));
+
+        long[] filmIds = usersByFilmBuilder.keySet().stream().mapToLong(Long::longValue).toArray();
+        long[][] usersByFilm = new long[filmIds.length][];
+        for (int i = 0; i < filmIds.length; i++) {
+            usersByFilm[i] = usersByFilmBuilder.get(filmIds[i]).toSortedArray();
+        }
+        SparseVector[] vectors = new SparseVector[filmIds.length];
+        ForkJoinPool.commonPool().invoke(new RebuildTask(filmIds, usersByFilm, newLikesByUser, vectors,
+                0, filmIds.length));
+
+        Map<Long, SparseVector> newCooccurrence = new HashMap<>(filmIds.length * 2);
+        for (int i = 0; i < filmIds.length; i++) {
+            if (!vectors[i].isEmpty()) {
+                newCooccurrence.put(filmIds[i], vectors[i]);
+            }
+        }
+
+        synchronized (this) {
+            List<long[]> pending = journal;
+            journal = null;
+            likesByUser = newLikesByUser;
+            cooccurrence = newCooccurrence;
+            for (long[] event : pending) {
+                if (event[0] > 0) {
+                    onLike(event[1], event[2]);
+                } else {
+                    onUnlike(event[1], event[2]);
+                }
+            }
+        }
+        log.info("Индекс рекомендаций перестроен: {} фильмов, {} пользователей", filmIds.length,
+                newLikesByUser.size());
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.error("Ошибка при перестройке индекса рекомендаций", e);
+        }
+    }
+
+    private SparseVector vector(long filmId) {
+        return cooccurrence.computeIfAbsent(filmId, id -> new SparseVector());
+    }
+
+    private void decrement(long filmId, long otherFilmId) {
+        SparseVector vector = cooccurrence.get(filmId);
+        if (vector != null) {
+            vector.add(otherFilmId, -1);
+            if (vector.isEmpty()) {
+                cooccurrence.remove(filmId);
+            }
+        }
+    }
+
+    private static final class RebuildTask extends RecursiveAction {
+        private final long[] filmIds;
+        private final long[][] usersByFilm;
+        private final Map<Long, long[]> likesByUser;
+        private final SparseVector[] vectors;
+        private final int from;
+        private final int to;
+
+        RebuildTask(long[] filmIds, long[][] usersByFilm, Map<Long, long[]> likesByUser,
+                    SparseVector[] vectors, int from, int to) {
+            this.filmIds = filmIds;
+            this.usersByFilm = usersByFilm;
+            this.likesByUser = likesByUser;
+            this.vectors = vectors;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > REBUILD_SPLIT_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RebuildTask(filmIds, usersByFilm, likesByUser, vectors, from, middle),
+                        new RebuildTask(filmIds, usersByFilm, likesByUser, vectors, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                LongIntCounter counter = new LongIntCounter();
+                for (long userId : usersByFilm[i]) {
+                    for (long otherFilmId : likesByUser.get(userId)) {
+                        if (otherFilmId != filmIds[i]) {
+                            counter.increment(otherFilmId);
+                        }
+                    }
+                }
+                vectors[i] = counter.toSparseVector();
+            }
+        }
+    }
+
+    private static final class LongArrayBuilder {
+        private long[] values = new long[4];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toSortedArray() {
+            long[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
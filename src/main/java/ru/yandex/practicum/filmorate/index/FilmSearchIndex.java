@@ -0,0 +1,344 @@
+package ru.yandex.practicum.filmorate.index;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Инвертированный индекс по названию и описанию фильмов с поиском по префиксам слов.
+ * Слова приводятся к нижнему регистру по правилам русской локали, «ё» заменяется на «е».
+ */
+@Slf4j
+@Component
+public class FilmSearchIndex {
+    private static final Locale RUSSIAN = Locale.forLanguageTag("ru");
+    private static final int SNAPSHOT_MAGIC = 0x46534958;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int EXACT_MATCH_BOOST = 2;
+
+    private final FilmStorage filmStorage;
+    private final Path snapshotPath;
+    private final long snapshotIntervalMinutes;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "search-index-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Long, Document> documents = new HashMap<>();
+    private final Map<Field, NavigableMap<String, Map<Long, Integer>>> postings = new EnumMap<>(Field.class);
+
+    @Autowired
+    public FilmSearchIndex(FilmStorage filmStorage,
+                           @Value("${filmorate.search.snapshot-path:}") String snapshotPath,
+                           @Value("${filmorate.search.snapshot-interval-minutes:10}") long snapshotIntervalMinutes) {
+        this.filmStorage = filmStorage;
+        this.snapshotPath = snapshotPath.isBlank() ? null : Path.of(snapshotPath);
+        this.snapshotIntervalMinutes = snapshotIntervalMinutes;
+        for (Field field : Field.values()) {
+            postings.put(field, new TreeMap<>());
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!loadSnapshot()) {
+            rebuild();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startSnapshots() {
+        if (snapshotPath == null || snapshotIntervalMinutes <= 0) {
+            return;
+        }
+        scheduler.scheduleWithFixedDelay(this::saveSnapshot, snapshotIntervalMinutes, snapshotIntervalMinutes,
+                TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        saveSnapshot();
+    }
+
+    public synchronized void rebuild() {
+        documents.clear();
+        postings.values().forEach(Map::clear);
+        filmStorage.streamFilms(0, this::put);
+        log.info("Поисковый индекс построен: {} фильмов", documents.size());
+    }
+
+    public synchronized void put(Film film) {
+        remove(film.getId());
+        addDocument(film.getId(), new Document(tokenize(film.getName()), tokenize(film.getDescription())));
+    }
+
+    /**
+     * Перечитывает фильм из хранилища под блокировкой индекса: при нескольких конкурентных правках
+     * последним в индекс попадает зафиксированное состояние, а не то, чьё обновление пришло позже.
+     */
+    public synchronized void refresh(long filmId) {
+        filmStorage.getFilmById(filmId).ifPresentOrElse(this::put, () -> remove(filmId));
+    }
+
+    public synchronized void remove(long filmId) {
+        Document document = documents.remove(filmId);
+        if (document == null) {
+            return;
+        }
+        for (Field field : Field.values()) {
+            NavigableMap<String, Map<Long, Integer>> fieldPostings = postings.get(field);
+            for (String term : document.terms(field)) {
+                Map<Long, Integer> films = fieldPostings.get(term);
+                if (films != null && films.remove(filmId) != null && films.isEmpty()) {
+                    fieldPostings.remove(term);
+                }
+            }
+        }
+    }
+
+    /**
+     * Ищет фильмы, в которых каждое слово запроса является началом какого-либо слова в выбранных полях.
+     * Возвращает релевантность по фильмам: совпадения в названии весят больше, точные совпадения
+     * слова — больше префиксных.
+     */
+    public synchronized Map<Long, Integer> search(String query, Set<Field> fields) {
+        Map<Long, Integer> scores = null;
+        for (String prefix : countTerms(tokenize(query)).keySet()) {
+            Map<Long, Integer> termScores = new HashMap<>();
+            for (Field field : fields) {
+                postings.get(field).subMap(prefix, true, prefix + Character.MAX_VALUE, false)
+                        .forEach((term, films) -> {
+                            int weight = field.weight * (term.equals(prefix) ? EXACT_MATCH_BOOST : 1);
+                            films.forEach((filmId, frequency) -> termScores.merge(filmId, weight * frequency,
+                                    Integer::sum));
+                        });
+            }
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                Map<Long, Integer> previous = scores;
+                scores = new HashMap<>();
+                for (Map.Entry<Long, Integer> entry : termScores.entrySet()) {
+                    Integer score = previous.get(entry.getKey());
+                    if (score != null) {
+                        scores.put(entry.getKey(), score + entry.getValue());
+                    }
+                }
+            }
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        return scores == null ? Map.of() : scores;
+    }
+
+    public static String[] tokenize(String text) {
+        if (text == null) {
+            return new String[0];
+        }
+        String normalized = text.toLowerCase(RUSSIAN).replace('ё', 'е');
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    /**
+     * Снимок сохраняется периодически и при штатной остановке. При загрузке сверяется отпечаток таблицы film:
+     * если после снимка фильмы менялись (в том числе до падения процесса), индекс перестраивается по БД.
+     * Отпечаток читается до копирования документов, поэтому правка, попавшая между ними, только сделает
+     * снимок устаревшим, но не потеряется.
+     */
+    public void saveSnapshot() {
+        if (snapshotPath == null) {
+            return;
+        }
+        Map<Long, Document> snapshot;
+        String fingerprint;
+        try {
+            fingerprint = filmStorage.getCatalogFingerprint();
+        } catch (RuntimeException e) {
+            log.warn("Не удалось сохранить снимок поискового индекса в {}", snapshotPath, e);
+            return;
+        }
+        synchronized (this) {
+            snapshot = new HashMap<>(documents);
+        }
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> terms = new ArrayList<>();
+        for (Document document : snapshot.values()) {
+            for (Field field : Field.values()) {
+                for (String term : document.terms(field)) {
+                    if (dictionary.putIfAbsent(term, terms.size()) == null) {
+                        terms.add(term);
+                    }
+                }
+            }
+        }
+        try {
+            if (snapshotPath.getParent() != null) {
+                Files.createDirectories(snapshotPath.getParent());
+            }
+            Path temporary = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(temporary)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeUTF(fingerprint);
+                writeVarInt(out, terms.size());
+                for (String term : terms) {
+                    out.writeUTF(term);
+                }
+                writeVarInt(out, snapshot.size());
+                for (Map.Entry<Long, Document> entry : snapshot.entrySet()) {
+                    out.writeLong(entry.getKey());
+                    for (Field field : Field.values()) {
+                        String[] documentTerms = entry.getValue().terms(field);
+                        writeVarInt(out, documentTerms.length);
+                        for (String term : documentTerms) {
+                            writeVarInt(out, dictionary.get(term));
+                        }
+                    }
+                }
+            }
+            Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            log.info("Снимок поискового индекса сохранён: {} фильмов, {} слов", snapshot.size(), terms.size());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Не удалось сохранить снимок поискового индекса в {}", snapshotPath, e);
+        }
+    }
+
+    private synchronized boolean loadSnapshot() {
+        if (snapshotPath == null || !Files.isRegularFile(snapshotPath)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                log.warn("Снимок поискового индекса {} имеет неизвестный формат", snapshotPath);
+                return false;
+            }
+            if (!in.readUTF().equals(filmStorage.getCatalogFingerprint())) {
+                log.info("Снимок поискового индекса устарел, индекс будет перестроен");
+                return false;
+            }
+            String[] terms = new String[readVarInt(in)];
+            for (int i = 0; i < terms.length; i++) {
+                terms[i] = in.readUTF();
+            }
+            int documentCount = readVarInt(in);
+            for (int i = 0; i < documentCount; i++) {
+                long filmId = in.readLong();
+                String[][] fieldTerms = new String[Field.values().length][];
+                for (Field field : Field.values()) {
+                    String[] documentTerms = new String[readVarInt(in)];
+                    for (int j = 0; j < documentTerms.length; j++) {
+                        documentTerms[j] = terms[readVarInt(in)];
+                    }
+                    fieldTerms[field.ordinal()] = documentTerms;
+                }
+                addDocument(filmId, new Document(fieldTerms[Field.TITLE.ordinal()],
+                        fieldTerms[Field.DESCRIPTION.ordinal()]));
+            }
+            log.info("Поисковый индекс загружен из снимка: {} фильмов", documents.size());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Не удалось прочитать снимок поискового индекса {}", snapshotPath, e);
+            documents.clear();
+            postings.values().forEach(Map::clear);
+            return false;
+        }
+    }
+
+    private void addDocument(long filmId, Document document) {
+        documents.put(filmId, document);
+        for (Field field : Field.values()) {
+            NavigableMap<String, Map<Long, Integer>> fieldPostings = postings.get(field);
+            countTerms(document.terms(field)).forEach((term, frequency) ->
+                    fieldPostings.computeIfAbsent(term, key -> new HashMap<>()).put(filmId, frequency));
+        }
+    }
+
+    private static Map<String, Integer> countTerms(String[] terms) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String term : terms) {
+            counts.merge(term, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Некорректное число в снимке поискового индекса");
+    }
+
+    public enum Field {
+        TITLE(3),
+        DESCRIPTION(1);
+
+        private final int weight;
+
+        Field(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private record Document(String[] title, String[] description) {
+        String[] terms(Field field) {
+            return field == Field.TITLE ? title : description;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Граф дружбы в памяти: для каждого пользователя — отсортированный массив ID друзей.
+ * Массивы не изменяются на месте, а заменяются копией, поэтому чтение идёт без блокировок.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.friends.graph.enabled", havingValue = "true")
+public class FriendGraph {
+    private static final long[] EMPTY = new long[0];
+    private static final int PARALLEL_THRESHOLD = 256;
+    private static final int PARALLEL_CHUNK = 64;
+    private static final long SUGGESTION_EDGE_BUDGET = 5_000_000;
+
+    private final Map<Long, long[]> adjacency = new ConcurrentHashMap<>();
+    // Обратные рёбра: кто добавил пользователя в друзья. Нужны, чтобы удаление пользователя
+    // не обходило списки друзей всех остальных
+    private final Map<Long, long[]> followers = new ConcurrentHashMap<>();
+
+    public void clear() {
+        adjacency.clear();
+        followers.clear();
+    }
+
+    public boolean addEdge(long userId, long friendId) {
+        if (!insert(adjacency, userId, friendId)) {
+            return false;
+        }
+        insert(followers, friendId, userId);
+        return true;
+    }
+
+    /**
+     * Задаёт список друзей целиком, без поэлементных вставок. Массив должен быть отсортирован.
+     */
+    public void setFriends(long userId, long[] friendIds) {
+        long[] previous = friendIds.length == 0 ? adjacency.remove(userId) : adjacency.put(userId, friendIds.clone());
+        if (previous != null) {
+            for (long friendId : previous) {
+                delete(followers, friendId, userId);
+            }
+        }
+        for (long friendId : friendIds) {
+            insert(followers, friendId, userId);
+        }
+    }
+
+    public boolean removeEdge(long userId, long friendId) {
+        if (!delete(adjacency, userId, friendId)) {
+            return false;
+        }
+        delete(followers, friendId, userId);
+        return true;
+    }
+
+    public void removeUser(long userId) {
+        long[] friends = adjacency.remove(userId);
+        if (friends != null) {
+            for (long friendId : friends) {
+                delete(followers, friendId, userId);
+            }
+        }
+        long[] followedBy = followers.remove(userId);
+        if (followedBy != null) {
+            for (long followerId : followedBy) {
+                delete(adjacency, followerId, userId);
+            }
+        }
+    }
+
+    public long[] getFriends(long userId) {
+        return adjacency.getOrDefault(userId, EMPTY);
+    }
+
+    public long[] getCommonFriends(long userId, long otherUserId) {
+        long[] first = getFriends(userId);
+        long[] second = getFriends(otherUserId);
+        long[] result = new long[Math.min(first.length, second.length)];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                result[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Друзья друзей, ранжированные по числу общих друзей (при равенстве — по ID).
+     * Обход ограничен двумя уровнями и бюджетом просмотренных рёбер; для пользователей
+     * с большим числом друзей второй уровень считается параллельно.
+     */
+    public long[] suggestFriends(long userId, int limit) {
+        long[] friends = getFriends(userId);
+        if (friends.length == 0 || limit <= 0) {
+            return EMPTY;
+        }
+        LongIntCounter counter;
+        if (friends.length < PARALLEL_THRESHOLD) {
+            counter = countMutual(userId, friends, 0, friends.length, SUGGESTION_EDGE_BUDGET);
+        } else {
+            int chunks = (friends.length + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
+            long chunkBudget = Math.max(1, SUGGESTION_EDGE_BUDGET / chunks);
+            counter = IntStream.range(0, chunks)
+                    .parallel()
+                    .mapToObj(chunk -> countMutual(userId, friends, chunk * PARALLEL_CHUNK,
+                            Math.min(friends.length, (chunk + 1) * PARALLEL_CHUNK), chunkBudget))
+                    .reduce(LongIntCounter::merge)
+                    .orElseGet(LongIntCounter::new);
+        }
+        return counter.top(limit);
+    }
+
+    private LongIntCounter countMutual(long userId, long[] friends, int from, int to, long budget) {
+        LongIntCounter counter = new LongIntCounter();
+        long visited = 0;
+        for (int i = from; i < to && visited < budget; i++) {
+            long[] secondDegree = getFriends(friends[i]);
+            visited += secondDegree.length;
+            for (long candidate : secondDegree) {
+                if (candidate != userId && Arrays.binarySearch(friends, candidate) < 0) {
+                    counter.increment(candidate);
+                }
+            }
+        }
+        return counter;
+    }
+
+    private static boolean insert(Map<Long, long[]> edges, long from, long to) {
+        boolean[] added = new boolean[1];
+        edges.compute(from, (id, targets) -> {
+            long[] current = targets == null ? EMPTY : targets;
+            int position = Arrays.binarySearch(current, to);
+            if (position >= 0) {
+                return current;
+            }
+            int insertAt = -position - 1;
+            long[] updated = new long[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, insertAt);
+            updated[insertAt] = to;
+            System.arraycopy(current, insertAt, updated, insertAt + 1, current.length - insertAt);
+            added[0] = true;
+            return updated;
+        });
+        return added[0];
+    }
+
+    private static boolean delete(Map<Long, long[]> edges, long from, long to) {
+        boolean[] removed = new boolean[1];
+        edges.computeIfPresent(from, (id, targets) -> {
+            int position = Arrays.binarySearch(targets, to);
+            if (position < 0) {
+                return targets;
+            }
+            removed[0] = true;
+            if (targets.length == 1) {
+                return null;
+            }
+            long[] updated = new long[targets.length - 1];
+            System.arraycopy(targets, 0, updated, 0, position);
+            System.arraycopy(targets, position + 1, updated, position, targets.length - position - 1);
+            return updated;
+        });
+        return removed[0];
+    }
+}
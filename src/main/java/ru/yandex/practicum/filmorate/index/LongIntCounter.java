@@ -0,0 +1,133 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Счётчик по long-ключам на открытой адресации без упаковки ключей.
+ */
+final class LongIntCounter {
+    private long[] keys = new long[64];
+    private int[] counts = new int[64];
+    private boolean[] used = new boolean[64];
+    private int size;
+
+    void increment(long key) {
+        add(key, 1);
+    }
+
+    void add(long key, int delta) {
+        if ((size + 1) * 2 > keys.length) {
+            resize();
+        }
+        int slot = slot(key, keys.length);
+        while (used[slot] && keys[slot] != key) {
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        if (!used[slot]) {
+            used[slot] = true;
+            keys[slot] = key;
+            size++;
+        }
+        counts[slot] += delta;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Складывает два счётчика, переиспользуя больший из них.
+     */
+    static LongIntCounter merge(LongIntCounter first, LongIntCounter second) {
+        LongIntCounter target = first.size >= second.size ? first : second;
+        LongIntCounter source = target == first ? second : first;
+        for (int i = 0; i < source.keys.length; i++) {
+            if (source.used[i]) {
+                target.add(source.keys[i], source.counts[i]);
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Ключи с наибольшими значениями (при равенстве — с меньшим ключом) в порядке убывания.
+     */
+    long[] top(int limit) {
+        PriorityQueue<long[]> heap = new PriorityQueue<>(limit + 1, (a, b) -> a[1] != b[1]
+                ? Long.compare(a[1], b[1])
+                : Long.compare(b[0], a[0]));
+        for (int i = 0; i < keys.length; i++) {
+            if (!used[i] || counts[i] <= 0) {
+                continue;
+            }
+            long[] peek = heap.size() < limit ? null : heap.peek();
+            if (peek == null || counts[i] > peek[1] || (counts[i] == peek[1] && keys[i] < peek[0])) {
+                heap.offer(new long[]{keys[i], counts[i]});
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            }
+        }
+        long[] result = new long[heap.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = heap.poll()[0];
+        }
+        return result;
+    }
+
+    /**
+     * Копирует содержимое в отсортированные по ключу массивы.
+     */
+    SparseVector toSparseVector() {
+        long[] sortedKeys = new long[size];
+        int position = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                sortedKeys[position++] = keys[i];
+            }
+        }
+        Arrays.sort(sortedKeys);
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = get(sortedKeys[i]);
+        }
+        return new SparseVector(sortedKeys, values);
+    }
+
+    private int get(long key) {
+        int slot = slot(key, keys.length);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return counts[slot];
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        return 0;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        boolean[] oldUsed = used;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        used = new boolean[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = slot(oldKeys[i], keys.length);
+                while (used[slot]) {
+                    slot = (slot + 1) & (keys.length - 1);
+                }
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private static int slot(long key, int capacity) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & (capacity - 1);
+    }
+}
@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.Arrays;
+
+/**
+ * Разреженный вектор счётчиков: отсортированные long-ключи и параллельный массив int-значений.
+ * Не потокобезопасен, синхронизацию обеспечивает владелец.
+ */
+final class SparseVector {
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    SparseVector() {
+        this(new long[4], new int[4], 0);
+    }
+
+    SparseVector(long[] keys, int[] values) {
+        this(keys, values, keys.length);
+    }
+
+    private SparseVector(long[] keys, int[] values, int size) {
+        this.keys = keys;
+        this.values = values;
+        this.size = size;
+    }
+
+    void add(long key, int delta) {
+        int position = Arrays.binarySearch(keys, 0, size, key);
+        if (position >= 0) {
+            values[position] += delta;
+            if (values[position] <= 0) {
+                System.arraycopy(keys, position + 1, keys, position, size - position - 1);
+                System.arraycopy(values, position + 1, values, position, size - position - 1);
+                size--;
+            }
+            return;
+        }
+        if (delta <= 0) {
+            return;
+        }
+        int insertAt = -position - 1;
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, Math.max(4, size * 2));
+            values = Arrays.copyOf(values, Math.max(4, size * 2));
+        }
+        System.arraycopy(keys, insertAt, keys, insertAt + 1, size - insertAt);
+        System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+        keys[insertAt] = key;
+        values[insertAt] = delta;
+        size++;
+    }
+
+    void addTo(LongIntCounter counter, long[] excludedSortedKeys) {
+        for (int i = 0; i < size; i++) {
+            if (Arrays.binarySearch(excludedSortedKeys, keys[i]) < 0) {
+                counter.add(keys[i], values[i]);
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+}
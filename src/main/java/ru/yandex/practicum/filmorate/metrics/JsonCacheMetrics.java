@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.cache.JsonByteCache;
+
+@Component
+public class JsonCacheMetrics implements MeterBinder {
+    private final ObjectProvider<JsonByteCache> jsonCache;
+
+    @Autowired
+    public JsonCacheMetrics(ObjectProvider<JsonByteCache> jsonCache) {
+        this.jsonCache = jsonCache;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        jsonCache.ifAvailable(cache -> {
+            FunctionCounter.builder("filmorate.json.cache", cache, JsonByteCache::getHits)
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("filmorate.json.cache", cache, JsonByteCache::getMisses)
+                    .tag("result", "miss")
+                    .register(registry);
+            FunctionCounter.builder("filmorate.json.cache.evictions", cache, JsonByteCache::getEvictions)
+                    .register(registry);
+            Gauge.builder("filmorate.json.cache.size", cache, JsonByteCache::getSizeBytes)
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder("filmorate.json.cache.hit.ratio", cache, JsonCacheMetrics::hitRatio)
+                    .register(registry);
+        });
+    }
+
+    private static double hitRatio(JsonByteCache cache) {
+        long hits = cache.getHits();
+        long total = hits + cache.getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
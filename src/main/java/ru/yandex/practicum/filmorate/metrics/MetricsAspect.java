@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Замеряет время, число строк и ошибки вызовов хранилищ и контроллеров.
+ */
+@Aspect
+@Component
+public class MetricsAspect {
+    private final MeterRegistry registry;
+
+    @Autowired
+    public MetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Around("execution(public * ru.yandex.practicum.filmorate.storage.*Storage.*(..))")
+    public Object measureStorage(ProceedingJoinPoint joinPoint) throws Throwable {
+        return measure("filmorate.storage", "storage", joinPoint, true);
+    }
+
+    @Around("within(ru.yandex.practicum.filmorate.controller..*) && execution(public * *(..))")
+    public Object measureController(ProceedingJoinPoint joinPoint) throws Throwable {
+        return measure("filmorate.controller", "controller", joinPoint, false);
+    }
+
+    private Object measure(String prefix, String componentTag, ProceedingJoinPoint joinPoint,
+                           boolean countRows) throws Throwable {
+        String component = joinPoint.getTarget().getClass().getSimpleName();
+        String method = joinPoint.getSignature().getName();
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = "success";
+        try {
+            Object result = joinPoint.proceed();
+            if (countRows) {
+                recordRows(prefix, componentTag, component, method, result);
+            }
+            return result;
+        } catch (Throwable e) {
+            outcome = "error";
+            registry.counter(prefix + ".errors",
+                    componentTag, component,
+                    "method", method,
+                    "exception", e.getClass().getSimpleName()).increment();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(prefix + ".calls")
+                    .tag(componentTag, component)
+                    .tag("method", method)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+    }
+
+    private void recordRows(String prefix, String componentTag, String component, String method, Object result) {
+        long rows;
+        if (result instanceof Collection<?> collection) {
+            rows = collection.size();
+        } else if (result instanceof Map<?, ?> map) {
+            rows = map.size();
+        } else if (result instanceof Optional<?> optional) {
+            rows = optional.isPresent() ? 1 : 0;
+        } else {
+            return;
+        }
+        DistributionSummary.builder(prefix + ".rows")
+                .tag(componentTag, component)
+                .tag("method", method)
+                .register(registry)
+                .record(rows);
+    }
+}
@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.RatingsDbStorage;
+
+import java.util.function.ToDoubleFunction;
+
+@Component
+public class ReferenceDataMetrics implements MeterBinder {
+    private final ObjectProvider<GenreDbStorage> genreStorage;
+    private final ObjectProvider<RatingsDbStorage> ratingsStorage;
+
+    @Autowired
+    public ReferenceDataMetrics(ObjectProvider<GenreDbStorage> genreStorage,
+                                ObjectProvider<RatingsDbStorage> ratingsStorage) {
+        this.genreStorage = genreStorage;
+        this.ratingsStorage = ratingsStorage;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        genreStorage.ifAvailable(storage -> {
+            bind(registry, "genre", "hit", storage, GenreDbStorage::getCacheHits);
+            bind(registry, "genre", "miss", storage, GenreDbStorage::getCacheMisses);
+        });
+        ratingsStorage.ifAvailable(storage -> {
+            bind(registry, "mpa", "hit", storage, RatingsDbStorage::getCacheHits);
+            bind(registry, "mpa", "miss", storage, RatingsDbStorage::getCacheMisses);
+        });
+    }
+
+    private <T> void bind(MeterRegistry registry, String cache, String result, T storage,
+                          ToDoubleFunction<T> counter) {
+        FunctionCounter.builder("filmorate.reference.cache", storage, counter)
+                .tag("cache", cache)
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -0,0 +1,66 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+/**
+ * Диагностика закрепления виртуальных потоков за несущими (pinning) через событие JFR jdk.VirtualThreadPinned.
+ * Каждое событие считается в метрике и логируется с верхними кадрами стека, где поток был закреплён.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.diagnostics.pinning.enabled", havingValue = "true")
+public class VirtualThreadPinningMonitor {
+    private static final int STACK_DEPTH = 8;
+
+    private final Counter pinnedCounter;
+    private final Duration threshold;
+    private RecordingStream stream;
+
+    @Autowired
+    public VirtualThreadPinningMonitor(MeterRegistry registry,
+                                       @Value("${filmorate.diagnostics.pinning.threshold-ms:20}") long thresholdMs) {
+        this.pinnedCounter = Counter.builder("filmorate.virtual.threads.pinned").register(registry);
+        this.threshold = Duration.ofMillis(thresholdMs);
+    }
+
+    @PostConstruct
+    public void start() {
+        stream = new RecordingStream();
+        stream.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+        stream.onEvent("jdk.VirtualThreadPinned", this::onPinned);
+        stream.startAsync();
+        log.info("Мониторинг закрепления виртуальных потоков включён, порог {} мс", threshold.toMillis());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinnedCounter.increment();
+        String stack = event.getStackTrace() == null ? "нет стека" : event.getStackTrace().getFrames().stream()
+                .limit(STACK_DEPTH)
+                .map(RecordedFrame::getMethod)
+                .map(method -> method.getType().getName() + "." + method.getName())
+                .collect(Collectors.joining(" <- "));
+        log.warn("Виртуальный поток {} закреплён на {} мс: {}", event.getThread() == null ? "?" :
+                event.getThread().getJavaName(), event.getDuration().toMillis(), stack);
+    }
+}
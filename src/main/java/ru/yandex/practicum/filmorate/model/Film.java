@@ -1,6 +1,7 @@
 package ru.yandex.practicum.filmorate.model;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -24,4 +25,6 @@ public class Film {
     private Ratings mpa;
     private Set<Long> likes = new HashSet<>();
     private List<Genre> genres;
+    @JsonIgnore
+    private long version;
 }
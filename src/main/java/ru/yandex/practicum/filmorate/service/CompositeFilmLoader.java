@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.config.ConcurrencyConfig;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Собирает фильмы из независимых запросов: строки фильмов (с рейтингом) и жанры читаются параллельно
+ * порциями ID, затем объединяются в исходном порядке. Число порций ограничено maxChunks, чтобы один
+ * большой запрос не занимал больше 2 × maxChunks соединений из пула.
+ */
+@Component
+public class CompositeFilmLoader {
+    private final FilmStorage filmStorage;
+    private final GenreStorage genreStorage;
+    private final ExecutorService executor;
+    private final int chunkSize;
+    private final int maxChunks;
+
+    @Autowired
+    public CompositeFilmLoader(FilmStorage filmStorage,
+                               GenreStorage genreStorage,
+                               @Qualifier(ConcurrencyConfig.FAN_OUT_EXECUTOR) ExecutorService executor,
+                               @Value("${filmorate.films.fan-out.chunk-size:256}") int chunkSize,
+                               @Value("${filmorate.films.fan-out.max-chunks:4}") int maxChunks) {
+        this.filmStorage = filmStorage;
+        this.genreStorage = genreStorage;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.maxChunks = maxChunks;
+    }
+
+    public List<Film> loadFilms(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        int size = Math.max(chunkSize, (ids.size() + maxChunks - 1) / maxChunks);
+        List<Future<List<Film>>> filmChunks = new ArrayList<>();
+        List<Future<Map<Long, List<Genre>>>> genreChunks = new ArrayList<>();
+        try (FanOutScope scope = new FanOutScope(executor)) {
+            for (int from = 0; from < ids.size(); from += size) {
+                List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + size));
+                filmChunks.add(scope.fork(() -> filmStorage.getFilmsByIds(chunk)));
+                genreChunks.add(scope.fork(() -> genreStorage.getGenresForFilms(chunk)));
+            }
+            scope.join();
+        }
+        Map<Long, List<Genre>> genresByFilmId = new HashMap<>(ids.size() * 2);
+        genreChunks.forEach(chunk -> genresByFilmId.putAll(chunk.resultNow()));
+        List<Film> films = new ArrayList<>(ids.size());
+        filmChunks.forEach(chunk -> films.addAll(chunk.resultNow()));
+        return withGenres(films, genresByFilmId);
+    }
+
+    /**
+     * Те же два запроса по ID, выполняемые в вызывающем потоке, — для выборок меньше порога распараллеливания.
+     */
+    public List<Film> loadFilmsSequentially(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return withGenres(new ArrayList<>(filmStorage.getFilmsByIds(ids)), genreStorage.getGenresForFilms(ids));
+    }
+
+    public Optional<Film> loadFilm(long id) {
+        return loadFilms(List.of(id)).stream().findFirst();
+    }
+
+    private static List<Film> withGenres(List<Film> films, Map<Long, List<Genre>> genresByFilmId) {
+        for (Film film : films) {
+            film.setGenres(new ArrayList<>(genresByFilmId.getOrDefault(film.getId(), Collections.emptyList())));
+        }
+        return films;
+    }
+}
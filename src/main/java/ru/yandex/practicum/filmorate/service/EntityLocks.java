@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Полосатые блокировки для изменений связей. Лайк и дружба берут блокировки участников на чтение и
+ * блокировку пары целиком: проверка и запись одной пары не перемежаются, а разные пары идут параллельно.
+ * Удаление фильма или пользователя берёт его блокировку на запись и ждёт изменений связей с ним.
+ * <p>
+ * Блокировки на чтение берутся в одном порядке (фильм, затем пользователи по номеру полосы), удаление
+ * держит только одну блокировку, поэтому взаимных ожиданий не бывает.
+ */
+@Component
+public class EntityLocks {
+    private final int mask;
+    private final ReentrantReadWriteLock[] filmLocks;
+    private final ReentrantReadWriteLock[] userLocks;
+    private final ReentrantLock[] pairLocks;
+
+    @Autowired
+    public EntityLocks(@Value("${filmorate.locks.stripes:1024}") int stripes) {
+        int size = Integer.highestOneBit(Math.max(stripes - 1, 1)) << 1;
+        this.mask = size - 1;
+        this.filmLocks = new ReentrantReadWriteLock[size];
+        this.userLocks = new ReentrantReadWriteLock[size];
+        this.pairLocks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            filmLocks[i] = new ReentrantReadWriteLock();
+            userLocks[i] = new ReentrantReadWriteLock();
+            pairLocks[i] = new ReentrantLock();
+        }
+    }
+
+    public <T> T forLike(long filmId, long userId, Supplier<T> action) {
+        Lock film = filmLocks[stripe(filmId)].readLock();
+        Lock user = userLocks[stripe(userId)].readLock();
+        Lock pair = pairLocks[stripe(filmId * 31 + userId)];
+        film.lock();
+        try {
+            user.lock();
+            try {
+                return withLock(pair, action);
+            } finally {
+                user.unlock();
+            }
+        } finally {
+            film.unlock();
+        }
+    }
+
+    public <T> T forFriendship(long userId, long friendId, Supplier<T> action) {
+        int first = Math.min(stripe(userId), stripe(friendId));
+        int second = Math.max(stripe(userId), stripe(friendId));
+        Lock pair = pairLocks[stripe(userId * 31 + friendId)];
+        Lock lower = userLocks[first].readLock();
+        lower.lock();
+        try {
+            if (first == second) {
+                return withLock(pair, action);
+            }
+            Lock upper = userLocks[second].readLock();
+            upper.lock();
+            try {
+                return withLock(pair, action);
+            } finally {
+                upper.unlock();
+            }
+        } finally {
+            lower.unlock();
+        }
+    }
+
+    public <T> T forFilmDeletion(long filmId, Supplier<T> action) {
+        return withLock(filmLocks[stripe(filmId)].writeLock(), action);
+    }
+
+    public <T> T forUserDeletion(long userId, Supplier<T> action) {
+        return withLock(userLocks[stripe(userId)].writeLock(), action);
+    }
+
+    private static <T> T withLock(Lock lock, Supplier<T> action) {
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int stripe(long id) {
+        long mixed = id * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Группа параллельных подзадач одного запроса в духе structured concurrency: join() дожидается всех,
+ * а первая ошибка отменяет остальные и пробрасывается вызывающему. Выход из try-with-resources
+ * отменяет всё, что ещё не завершилось.
+ */
+final class FanOutScope implements AutoCloseable {
+    private final ExecutorCompletionService<Object> completion;
+    private final List<Future<Object>> futures = new ArrayList<>();
+
+    FanOutScope(ExecutorService executor) {
+        this.completion = new ExecutorCompletionService<>(executor);
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> Future<T> fork(Callable<T> task) {
+        Future<Object> future = completion.submit((Callable<Object>) task);
+        futures.add(future);
+        return (Future<T>) future;
+    }
+
+    void join() {
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                completion.take().get();
+            }
+        } catch (InterruptedException e) {
+            cancelAll();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание параллельных запросов прервано", e);
+        } catch (ExecutionException e) {
+            cancelAll();
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        cancelAll();
+    }
+
+    private void cancelAll() {
+        futures.forEach(future -> future.cancel(true));
+    }
+}
@@ -2,23 +2,40 @@ package ru.yandex.practicum.filmorate.service;
 
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.index.FilmRecommendationIndex;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
 import ru.yandex.practicum.filmorate.model.Ratings;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.RatingsStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -27,17 +44,39 @@ public class FilmService {
     private final UserStorage userStorage;
     private final GenreStorage genreStorage;
     private final RatingsStorage ratingsStorage;
+    private final FilmRecommendationIndex recommendationIndex;
+    private final FilmSearchIndex searchIndex;
+    private final CompositeFilmLoader compositeLoader;
+    private final EntityLocks locks;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean fanOutEnabled;
+    private final int fanOutMinPageSize;
+    private volatile ReferenceDataVersion referenceDataVersion;
 
     @Autowired
     public FilmService(
-            @Qualifier("filmDbStorage") FilmStorage filmStorage,
-            @Qualifier("userDbStorage") UserStorage userStorage,
+            FilmStorage filmStorage,
+            UserStorage userStorage,
             GenreStorage genreStorage,
-            RatingsStorage ratingsStorage) {
+            RatingsStorage ratingsStorage,
+            Optional<FilmRecommendationIndex> recommendationIndex,
+            FilmSearchIndex searchIndex,
+            CompositeFilmLoader compositeLoader,
+            EntityLocks locks,
+            TransactionTemplate transactionTemplate,
+            @Value("${filmorate.films.fan-out.enabled:false}") boolean fanOutEnabled,
+            @Value("${filmorate.films.fan-out.min-page-size:256}") int fanOutMinPageSize) {
         this.filmStorage = filmStorage;
         this.userStorage = userStorage;
         this.genreStorage = genreStorage;
         this.ratingsStorage = ratingsStorage;
+        this.recommendationIndex = recommendationIndex.orElse(null);
+        this.searchIndex = searchIndex;
+        this.compositeLoader = compositeLoader;
+        this.locks = locks;
+        this.transactionTemplate = transactionTemplate;
+        this.fanOutEnabled = fanOutEnabled;
+        this.fanOutMinPageSize = fanOutMinPageSize;
     }
 
     public List<Genre> getAllGenres() {
@@ -49,6 +88,34 @@ public class FilmService {
                 .orElseThrow(() -> new NotFoundException("Жанр с ID " + id + " не найден"));
     }
 
+    /**
+     * Общая версия справочников жанров и рейтингов: первые 8 байт SHA-256 от их содержимого,
+     * поэтому не меняется между перезапусками, если не менялись данные. Хэш пересчитывается только
+     * после перезагрузки кэша справочника, которая заменяет закэшированный список.
+     */
+    public long getReferenceDataVersion() {
+        List<Genre> genres = genreStorage.getAllGenres();
+        List<Ratings> ratings = ratingsStorage.getAllRatings();
+        ReferenceDataVersion current = referenceDataVersion;
+        if (current == null || current.genres() != genres || current.ratings() != ratings) {
+            current = new ReferenceDataVersion(genres, ratings, digest(genres, ratings));
+            referenceDataVersion = current;
+        }
+        return current.version();
+    }
+
+    private static long digest(List<Genre> genres, List<Ratings> ratings) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            sha256.update(genres.toString().getBytes(StandardCharsets.UTF_8));
+            sha256.update((byte) 0);
+            sha256.update(ratings.toString().getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(sha256.digest()).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     public List<Ratings> getAllRatings() {
         return ratingsStorage.getAllRatings();
     }
@@ -58,36 +125,75 @@ public class FilmService {
                 .orElseThrow(() -> new NotFoundException("Рейтинг с ID " + id + " не найден"));
     }
 
+    @Transactional
     public Film createFilm(Film film) {
         validateFilm(film);
-        validateMpaExists(film.getMpa());
-        validateGenresExist(film.getGenres());
+        film.setMpa(validateMpaExists(film.getMpa()));
+        film.setGenres(validateGenresExist(film.getGenres()));
 
         Film createdFilm = filmStorage.createFilm(film);
-        updateFilmGenres(createdFilm.getId(), film.getGenres());
-        return getFilmById(createdFilm.getId());
+        updateFilmGenres(createdFilm.getId(), createdFilm.getGenres());
+        AfterCommit.run(() -> searchIndex.put(createdFilm));
+        return createdFilm;
     }
 
+    /**
+     * Проверяет фильм из импорта по тем же правилам, что и createFilm, и подставляет справочные MPA и жанры.
+     */
+    public void prepareImportedFilm(Film film) {
+        validateFilm(film);
+        if (film.getMpa() == null) {
+            throw new ValidationException("MPA рейтинг фильма обязателен");
+        }
+        film.setMpa(validateMpaExists(film.getMpa()));
+        film.setGenres(validateGenresExist(film.getGenres()));
+    }
+
+    /**
+     * Пакетное создание фильмов, уже подготовленных prepareImportedFilm.
+     */
+    @Transactional
+    public List<Film> createFilms(List<Film> films) {
+        List<Film> createdFilms = filmStorage.createFilms(films);
+        AfterCommit.run(() -> createdFilms.forEach(searchIndex::put));
+        return createdFilms;
+    }
+
+    @Transactional
     public Film updateFilm(Film film) {
-        getFilmOrThrow(film.getId()); // Проверяем существование фильма
-        validateMpaExists(film.getMpa());
-        validateGenresExist(film.getGenres());
+        film.setMpa(validateMpaExists(film.getMpa()));
+        film.setGenres(validateGenresExist(film.getGenres()));
 
-        filmStorage.updateFilm(film);
-        updateFilmGenres(film.getId(), film.getGenres());
-        return getFilmById(film.getId());
+        Film updatedFilm = filmStorage.updateFilm(film); // Бросает NotFoundException, если фильма нет
+        updateFilmGenres(updatedFilm.getId(), updatedFilm.getGenres());
+        AfterCommit.run(() -> searchIndex.refresh(updatedFilm.getId()));
+        return updatedFilm;
+    }
+
+    /**
+     * Транзакция фиксируется до снятия блокировки фильма, поэтому лайк, ждавший удаления, уже не найдёт фильм.
+     */
+    public void deleteFilm(long id) {
+        locks.forFilmDeletion(id, () -> {
+            // Отложенные лайки удаляемого фильма должны попасть в таблицу до каскадного удаления, а не после него
+            filmStorage.flushPendingLikes();
+            return transactionTemplate.execute(status -> {
+                if (!filmStorage.filmExists(id)) {
+                    throw new NotFoundException("Фильм с ID " + id + " не найден");
+                }
+                filmStorage.deleteFilm(id);
+                AfterCommit.run(() -> searchIndex.remove(id));
+                updateRecommendations(index -> index.removeFilm(id));
+                return null;
+            });
+        });
     }
 
     private void updateFilmGenres(long filmId, List<Genre> genres) {
-        genreStorage.removeGenresFromFilm(filmId);
-        if (genres != null && !genres.isEmpty()) {
-            genres.stream()
-                    .map(Genre::getId)
-                    .distinct()
-                    .forEach(genreId -> {
-                        genreStorage.addGenreToFilm(filmId, genreId);
-                    });
-        }
+        List<Integer> genreIds = genres.stream()
+                .map(Genre::getId)
+                .collect(Collectors.toList());
+        genreStorage.replaceFilmGenres(filmId, genreIds);
     }
 
     private void validateFilm(Film film) {
@@ -105,78 +211,180 @@ public class FilmService {
         }
     }
 
-    private void validateMpaExists(Ratings mpa) {
-        if (mpa != null) {
-            ratingsStorage.getRatingById(mpa.getId())
-                    .orElseThrow(() -> new NotFoundException("MPA рейтинг с ID " + mpa.getId() + " не найден"));
+    private Ratings validateMpaExists(Ratings mpa) {
+        if (mpa == null) {
+            return null;
         }
+        return ratingsStorage.getRatingById(mpa.getId())
+                .orElseThrow(() -> new NotFoundException("MPA рейтинг с ID " + mpa.getId() + " не найден"));
     }
 
-    private void validateGenresExist(List<Genre> genres) {
-        if (genres != null) {
-            for (Genre genre : genres) {
-                // Не проверяем genre.getId() == null, так как int не может быть null
-                genreStorage.getGenreById(genre.getId())
-                        .orElseThrow(() -> new NotFoundException("Жанр с ID " + genre.getId() + " не найден"));
-            }
+    private List<Genre> validateGenresExist(List<Genre> genres) {
+        if (genres == null) {
+            return new ArrayList<>();
+        }
+        Map<Integer, Genre> resolved = new TreeMap<>();
+        for (Genre genre : genres) {
+            // Не проверяем genre.getId() == null, так как int не может быть null
+            resolved.computeIfAbsent(genre.getId(), id -> genreStorage.getGenreById(id)
+                    .orElseThrow(() -> new NotFoundException("Жанр с ID " + id + " не найден")));
         }
+        return new ArrayList<>(resolved.values());
     }
 
+    /**
+     * Полный список читается одним запросом с соединением таблиц: параллельная сборка всего каталога
+     * заняла бы пул соединений ради одного запроса.
+     */
     public Collection<Film> getAllFilms() {
-        List<Film> films = filmStorage.getAllFilms();
-        return enrichFilmsWithGenres(films);
+        return filmStorage.getAllFilms();
     }
 
-    public Film getFilmById(long id) {
-        Film film = getFilmOrThrow(id);
-        film.setGenres(genreStorage.getFilmGenres(film.getId()));
-        return film;
+    public List<Film> getFilms(long afterId, int limit) {
+        if (fanOutEnabled && limit >= fanOutMinPageSize) {
+            return compositeLoader.loadFilms(filmStorage.getFilmIds(afterId, limit));
+        }
+        return filmStorage.getFilms(afterId, limit);
     }
 
-    public void addLike(long filmId, long userId) {
-        getFilmOrThrow(filmId);
-        checkUserExists(userId);
+    public void streamFilms(long afterId, Consumer<Film> consumer) {
+        filmStorage.streamFilms(afterId, consumer);
+    }
 
-        filmStorage.addLike(filmId, userId);
+    /**
+     * Версия строки фильма: для проверки ETag не требуется собирать фильм с жанрами.
+     */
+    public long getFilmVersion(long id) {
+        return filmStorage.getFilmVersion(id)
+                .orElseThrow(() -> new NotFoundException("Фильм с ID " + id + " не найден"));
     }
 
-    public void removeLike(long filmId, long userId) {
-        getFilmOrThrow(filmId);
-        checkUserExists(userId);
+    public List<Long> getPopularFilmIds(int count, Integer genreId, Integer year) {
+        return filmStorage.getPopularFilmIds(count, genreId, year);
+    }
+
+    /**
+     * Строки фильмов и их жанры читаются двумя запросами по списку ID. При filmorate.films.fan-out.enabled
+     * и выборке не меньше min-page-size запросы выполняются параллельно, как в getFilms.
+     */
+    public List<Film> getFilmsByIds(List<Long> ids) {
+        if (fanOutEnabled && ids.size() >= fanOutMinPageSize) {
+            return compositeLoader.loadFilms(ids);
+        }
+        return compositeLoader.loadFilmsSequentially(ids);
+    }
 
-        filmStorage.removeLike(filmId, userId);
+    public Film getFilmById(long id) {
+        return getFilmOrThrow(id);
     }
 
-    public List<Film> getPopularFilms(int count) {
-        List<Film> films = filmStorage.getPopularFilms(count);
-        return enrichFilmsWithGenres(films);
+    /**
+     * Возвращает false, если лайк уже был поставлен.
+     */
+    public boolean addLike(long filmId, long userId) {
+        return locks.forLike(filmId, userId, () -> {
+            try {
+                if (filmStorage.addLike(filmId, userId)) {
+                    updateRecommendations(index -> index.onLike(filmId, userId));
+                    return true;
+                }
+            } catch (DataIntegrityViolationException e) {
+                checkLikeParticipantsExist(filmId, userId);
+                throw e;
+            }
+            return false;
+        });
     }
 
-    private Film getFilmOrThrow(long filmId) {
-        return filmStorage.getFilmById(filmId)
-                .orElseThrow(() -> new NotFoundException("Фильм с ID " + filmId + " не найден"));
+    public int addLikes(List<Like> likes) {
+        // Отложенное снятие лайка должно попасть в таблицу до пакетной вставки: иначе MERGE сочтёт лайк
+        // уже стоящим, а следующий сброс буфера его удалит
+        filmStorage.flushPendingLikes();
+        return transactionTemplate.execute(status -> {
+            List<Like> added = filmStorage.addLikes(likes);
+            updateRecommendations(index -> added.forEach(like -> index.onLike(like.getFilmId(), like.getUserId())));
+            return added.size();
+        });
     }
 
-    private void checkUserExists(long userId) {
-        userStorage.getUserById(userId)
-                .orElseThrow(() -> new NotFoundException("Пользователь с ID " + userId + " не найден"));
+    public void removeLike(long filmId, long userId) {
+        locks.forLike(filmId, userId, () -> {
+            if (filmStorage.removeLike(filmId, userId)) {
+                updateRecommendations(index -> index.onUnlike(filmId, userId));
+            } else {
+                // Лайка не было: повтор безопасен, но на несуществующие фильм или пользователя отвечаем 404
+                checkLikeParticipantsExist(filmId, userId);
+            }
+            return null;
+        });
     }
 
-    private List<Film> enrichFilmsWithGenres(List<Film> films) {
-        if (films.isEmpty()) {
-            return films;
+    public List<Film> getRecommendations(long userId, int limit) {
+        if (!userStorage.userExists(userId)) {
+            throw new NotFoundException("Пользователь с ID " + userId + " не найден");
         }
+        if (recommendationIndex == null) {
+            return List.of();
+        }
+        List<Long> filmIds = Arrays.stream(recommendationIndex.recommend(userId, limit))
+                .boxed()
+                .collect(Collectors.toList());
+        return getFilmsByIds(filmIds);
+    }
 
-        List<Long> filmIds = films.stream()
-                .map(Film::getId)
+    public List<Film> searchFilms(String query, String by, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new ValidationException("Поисковый запрос не может быть пустым");
+        }
+        Map<Long, Integer> scores = searchIndex.search(query, parseSearchFields(by));
+        Map<Long, Integer> likes = filmStorage.getLikeCounts(scores.keySet());
+        Comparator<Long> ranking = Comparator.<Long>comparingInt(scores::get).reversed()
+                .thenComparing(Comparator.<Long>comparingInt(id -> likes.getOrDefault(id, 0)).reversed())
+                .thenComparingLong(Long::longValue);
+        List<Long> filmIds = scores.keySet().stream()
+                .sorted(ranking)
+                .limit(limit)
                 .collect(Collectors.toList());
+        return getFilmsByIds(filmIds);
+    }
 
-        Map<Long, List<Genre>> genresByFilmId = genreStorage.getGenresForFilms(filmIds);
+    private Set<FilmSearchIndex.Field> parseSearchFields(String by) {
+        Set<FilmSearchIndex.Field> fields = EnumSet.noneOf(FilmSearchIndex.Field.class);
+        for (String name : by.split(",")) {
+            switch (name.trim().toLowerCase()) {
+                case "title" -> fields.add(FilmSearchIndex.Field.TITLE);
+                case "description" -> fields.add(FilmSearchIndex.Field.DESCRIPTION);
+                default -> throw new ValidationException("Неизвестное поле поиска: " + name.trim());
+            }
+        }
+        return fields;
+    }
+
+    private Film getFilmOrThrow(long filmId) {
+        Optional<Film> film = fanOutEnabled ? compositeLoader.loadFilm(filmId) : filmStorage.getFilmById(filmId);
+        return film
+                .orElseThrow(() -> new NotFoundException("Фильм с ID " + filmId + " не найден"));
+    }
 
-        films.forEach(film ->
-                film.setGenres(genresByFilmId.getOrDefault(film.getId(), Collections.emptyList()))
-        );
+    /**
+     * Индекс рекомендаций меняется только после фиксации транзакции и только если он включён
+     * (filmorate.recommendations.enabled).
+     */
+    private void updateRecommendations(Consumer<FilmRecommendationIndex> update) {
+        if (recommendationIndex != null) {
+            AfterCommit.run(() -> update.accept(recommendationIndex));
+        }
+    }
+
+    private void checkLikeParticipantsExist(long filmId, long userId) {
+        if (!filmStorage.filmExists(filmId)) {
+            throw new NotFoundException("Фильм с ID " + filmId + " не найден");
+        }
+        if (!userStorage.userExists(userId)) {
+            throw new NotFoundException("Пользователь с ID " + userId + " не найден");
+        }
+    }
 
-        return films;
+    private record ReferenceDataVersion(List<Genre> genres, List<Ratings> ratings, long version) {
     }
 }
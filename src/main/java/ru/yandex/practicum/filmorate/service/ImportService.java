@@ -0,0 +1,283 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Массовая загрузка фильмов, пользователей, лайков и дружбы из NDJSON или CSV.
+ * Тело читается построчно, записи проверяются по тем же правилам, что и в API, и пишутся пакетами,
+ * каждый в своей транзакции. Если пакет не записался, его строки повторяются по одной через обычные
+ * методы сервисов, чтобы отделить ошибочные строки от остальных. Уже существующие лайки и дружба
+ * не считаются загруженными и учитываются как пропущенные.
+ */
+@Slf4j
+@Service
+public class ImportService {
+    private final FilmService filmService;
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+
+    @Autowired
+    public ImportService(FilmService filmService, UserService userService, ObjectMapper objectMapper,
+                         @Value("${filmorate.import.batch-size:1000}") int batchSize) {
+        this.filmService = filmService;
+        this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+    }
+
+    public ImportProgress importData(Type type, Format format, InputStream body, ImportListener listener)
+            throws IOException {
+        return switch (type) {
+            case FILMS -> run(type, format, body, listener, Film.class, filmService::prepareImportedFilm,
+                    films -> filmService.createFilms(films).size(), film -> filmService.createFilm(film) != null);
+            case USERS -> run(type, format, body, listener, User.class, userService::validateUser,
+                    users -> userService.createUsers(users).size(), user -> userService.createUser(user) != null);
+            case LIKES -> run(type, format, body, listener, Like.class, like -> { },
+                    filmService::addLikes, like -> filmService.addLike(like.getFilmId(), like.getUserId()));
+            case FRIENDS -> run(type, format, body, listener, Friendship.class, userService::validateFriendship,
+                    userService::addFriends,
+                    friendship -> userService.addFriend(friendship.getUserId(), friendship.getFriendId()));
+        };
+    }
+
+    private <T> ImportProgress run(Type type, Format format, InputStream body, ImportListener listener,
+                                   Class<T> rowType, Consumer<T> validator, ToIntFunction<List<T>> batchWriter,
+                                   Predicate<T> rowWriter) throws IOException {
+        ImportRun<T> run = new ImportRun<>(type, listener, batchWriter, rowWriter);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        if (format == Format.CSV) {
+            readCsv(reader, rowType, validator, run);
+        } else {
+            readNdjson(reader, rowType, validator, run);
+        }
+        run.flush();
+        ImportProgress summary = run.progress();
+        log.info("Импорт {} завершён: обработано {}, загружено {}, пропущено {}, ошибок {}, за {} мс", type.path,
+                summary.processed(), summary.imported(), summary.skipped(), summary.failed(), summary.elapsedMs());
+        return summary;
+    }
+
+    private <T> void readNdjson(BufferedReader reader, Class<T> rowType, Consumer<T> validator, ImportRun<T> run)
+            throws IOException {
+        String line;
+        long lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            T row;
+            try {
+                row = objectMapper.readValue(line, rowType);
+            } catch (JsonProcessingException e) {
+                run.reject(lineNumber, "Некорректный JSON: " + e.getOriginalMessage());
+                continue;
+            }
+            run.accept(lineNumber, row, validator);
+        }
+    }
+
+    private <T> void readCsv(BufferedReader reader, Class<T> rowType, Consumer<T> validator, ImportRun<T> run)
+            throws IOException {
+        CsvReader csv = new CsvReader(reader);
+        List<String> header = csv.next();
+        if (header == null) {
+            return;
+        }
+        List<String> columns = header.stream().map(String::trim).toList();
+        while (true) {
+            List<String> fields;
+            try {
+                fields = csv.next();
+            } catch (ValidationException e) {
+                // Дальше разбирать нельзя: незакрытая кавычка поглотила остаток файла
+                run.reject(csv.getRecordLine(), e.getMessage());
+                return;
+            }
+            if (fields == null) {
+                return;
+            }
+            long lineNumber = csv.getRecordLine();
+            if (fields.size() != columns.size()) {
+                run.reject(lineNumber, "Ожидалось полей: " + columns.size() + ", получено: " + fields.size());
+                continue;
+            }
+            T row;
+            try {
+                row = objectMapper.treeToValue(toJson(columns, fields), rowType);
+            } catch (JsonProcessingException | IllegalArgumentException e) {
+                run.reject(lineNumber, "Некорректное значение: " + e.getMessage());
+                continue;
+            }
+            run.accept(lineNumber, row, validator);
+        }
+    }
+
+    /**
+     * Колонки CSV называются так же, как поля JSON. MPA задаётся ID рейтинга, жанры — ID через «|».
+     * Пустые ячейки пропускаются.
+     */
+    private ObjectNode toJson(List<String> columns, List<String> fields) {
+        ObjectNode node = objectMapper.createObjectNode();
+        for (int i = 0; i < columns.size(); i++) {
+            String column = columns.get(i);
+            String value = fields.get(i).trim();
+            if (value.isEmpty()) {
+                continue;
+            }
+            switch (column) {
+                case "mpa" -> node.putObject("mpa").put("id", value);
+                case "genres" -> {
+                    ArrayNode genres = node.putArray("genres");
+                    for (String genreId : value.split("\\|")) {
+                        genres.addObject().put("id", genreId.trim());
+                    }
+                }
+                default -> node.put(column, value);
+            }
+        }
+        return node;
+    }
+
+    private class ImportRun<T> {
+        private final Type type;
+        private final ImportListener listener;
+        private final ToIntFunction<List<T>> batchWriter;
+        private final Predicate<T> rowWriter;
+        private final long startedAt = System.nanoTime();
+        private final List<T> batch = new ArrayList<>(batchSize);
+        private final List<Long> batchLines = new ArrayList<>(batchSize);
+        private long processed;
+        private long imported;
+        private long skipped;
+        private long failed;
+
+        ImportRun(Type type, ImportListener listener, ToIntFunction<List<T>> batchWriter, Predicate<T> rowWriter) {
+            this.type = type;
+            this.listener = listener;
+            this.batchWriter = batchWriter;
+            this.rowWriter = rowWriter;
+        }
+
+        void accept(long line, T row, Consumer<T> validator) {
+            try {
+                validator.accept(row);
+            } catch (ValidationException | NotFoundException e) {
+                reject(line, e.getMessage());
+                return;
+            }
+            processed++;
+            batch.add(row);
+            batchLines.add(line);
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void reject(long line, String message) {
+            processed++;
+            failed++;
+            listener.onRowError(new RowError(line, message));
+        }
+
+        void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                int written = batchWriter.applyAsInt(batch);
+                imported += written;
+                skipped += batch.size() - written;
+            } catch (DataAccessException e) {
+                log.debug("Пакет импорта {} не записан, повтор по строкам", type.path, e);
+                for (int i = 0; i < batch.size(); i++) {
+                    try {
+                        if (rowWriter.test(batch.get(i))) {
+                            imported++;
+                        } else {
+                            skipped++;
+                        }
+                    } catch (ValidationException | NotFoundException | IllegalArgumentException
+                             | DataAccessException rowError) {
+                        failed++;
+                        listener.onRowError(new RowError(batchLines.get(i), rowError.getMessage()));
+                    }
+                }
+            }
+            batch.clear();
+            batchLines.clear();
+            listener.onProgress(progress());
+        }
+
+        ImportProgress progress() {
+            return new ImportProgress(type.path, processed, imported, skipped, failed,
+                    (System.nanoTime() - startedAt) / 1_000_000);
+        }
+    }
+
+    public enum Type {
+        FILMS("films"),
+        USERS("users"),
+        LIKES("likes"),
+        FRIENDS("friends");
+
+        private final String path;
+
+        Type(String path) {
+            this.path = path;
+        }
+
+        public static Type fromPath(String path) {
+            for (Type type : values()) {
+                if (type.path.equals(path)) {
+                    return type;
+                }
+            }
+            throw new NotFoundException("Неизвестный тип импорта: " + path);
+        }
+    }
+
+    public enum Format {
+        NDJSON,
+        CSV
+    }
+
+    public interface ImportListener {
+        void onRowError(RowError error);
+
+        void onProgress(ImportProgress progress);
+    }
+
+    public record RowError(long line, String message) {
+    }
+
+    public record ImportProgress(String type, long processed, long imported, long skipped, long failed,
+                                 long elapsedMs) {
+    }
+}
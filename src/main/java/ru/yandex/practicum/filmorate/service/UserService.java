@@ -2,40 +2,97 @@ package ru.yandex.practicum.filmorate.service;
 
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.index.FilmRecommendationIndex;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
+import java.time.LocalDate;
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 public class UserService {
     private final UserStorage userStorage;
+    private final FilmStorage filmStorage;
+    private final FilmRecommendationIndex recommendationIndex;
+    private final EntityLocks locks;
+    private final TransactionTemplate transactionTemplate;
 
     @Autowired
-    public UserService(@Qualifier("userDbStorage") UserStorage userStorage) {
+    public UserService(UserStorage userStorage, FilmStorage filmStorage,
+                       Optional<FilmRecommendationIndex> recommendationIndex, EntityLocks locks,
+                       TransactionTemplate transactionTemplate) {
         this.userStorage = userStorage;
+        this.filmStorage = filmStorage;
+        this.recommendationIndex = recommendationIndex.orElse(null);
+        this.locks = locks;
+        this.transactionTemplate = transactionTemplate;
     }
 
-    public void addFriend(long userId, long friendId) {
-        checkUserExists(userId);
-        checkUserExists(friendId);
-
+    /**
+     * Возвращает false, если пользователь уже был в друзьях.
+     */
+    public boolean addFriend(long userId, long friendId) {
         if (userId == friendId) {
+            checkUserExists(userId);
             throw new IllegalArgumentException("Пользователь не может добавить самого себя в друзья");
         }
 
-        userStorage.addFriend(userId, friendId);
+        return locks.forFriendship(userId, friendId, () -> {
+            try {
+                return userStorage.addFriend(userId, friendId);
+            } catch (DataIntegrityViolationException e) {
+                checkUserExists(userId);
+                checkUserExists(friendId);
+                throw e;
+            }
+        });
+    }
+
+    @Transactional
+    public int addFriends(List<Friendship> friendships) {
+        return userStorage.addFriends(friendships);
     }
 
     public void removeFriend(long userId, long friendId) {
-        checkUserExists(userId);
-        checkUserExists(friendId);
+        locks.forFriendship(userId, friendId, () -> {
+            if (!userStorage.removeFriend(userId, friendId)) {
+                // Дружбы не было: повтор безопасен, но на несуществующих пользователей отвечаем 404
+                checkUserExists(userId);
+                checkUserExists(friendId);
+            }
+            return null;
+        });
+    }
 
-        userStorage.removeFriend(userId, friendId);
+    /**
+     * Удаляет пользователя с его лайками и дружбой. Транзакция фиксируется до снятия блокировки,
+     * поэтому ждавшие её лайк или дружба уже не найдут пользователя и получат 404.
+     */
+    public void deleteUser(long id) {
+        locks.forUserDeletion(id, () -> {
+            // Отложенные лайки удаляемого пользователя должны попасть в таблицу до каскадного удаления
+            filmStorage.flushPendingLikes();
+            return transactionTemplate.execute(status -> {
+                checkUserExists(id);
+                filmStorage.removeUserLikes(id);
+                userStorage.deleteUser(id);
+                if (recommendationIndex != null) {
+                    AfterCommit.run(() -> recommendationIndex.removeUser(id));
+                }
+                return null;
+            });
+        });
     }
 
     public List<User> getFriends(long userId) {
@@ -50,11 +107,24 @@ public class UserService {
         return userStorage.getCommonFriends(userId, otherUserId);
     }
 
+    public List<User> getFriendSuggestions(long userId, int limit) {
+        checkUserExists(userId);
+        return userStorage.getFriendSuggestions(userId, limit);
+    }
+
     public User getUserById(long id) {
         return userStorage.getUserById(id)
                 .orElseThrow(() -> new NotFoundException("Пользователь с ID " + id + " не найден"));
     }
 
+    /**
+     * Версия строки пользователя: для проверки ETag не требуется читать саму запись.
+     */
+    public long getUserVersion(long id) {
+        return userStorage.getUserVersion(id)
+                .orElseThrow(() -> new NotFoundException("Пользователь с ID " + id + " не найден"));
+    }
+
     public User createUser(User user) {
         if (user.getName() == null || user.getName().isBlank()) {
             user.setName(user.getLogin());
@@ -62,6 +132,40 @@ public class UserService {
         return userStorage.createUser(user);
     }
 
+    @Transactional
+    public List<User> createUsers(List<User> users) {
+        users.forEach(user -> {
+            if (user.getName() == null || user.getName().isBlank()) {
+                user.setName(user.getLogin());
+            }
+        });
+        return userStorage.createUsers(users);
+    }
+
+    /**
+     * Те же правила, что проверяет UserController, для записей, приходящих в обход контроллера.
+     */
+    public void validateUser(User user) {
+        if (user.getEmail() == null || user.getEmail().isBlank() || !user.getEmail().contains("@")) {
+            throw new ValidationException("Электронная почта не может быть пустой и должна содержать @");
+        }
+        if (user.getLogin() == null || user.getLogin().isBlank() || user.getLogin().contains(" ")) {
+            throw new ValidationException("Логин не может быть пустым и содержать пробелы");
+        }
+        if (user.getBirthday() == null) {
+            throw new ValidationException("Дата рождения обязательна");
+        }
+        if (user.getBirthday().isAfter(LocalDate.now())) {
+            throw new ValidationException("Дата рождения не может быть в будущем");
+        }
+    }
+
+    public void validateFriendship(Friendship friendship) {
+        if (friendship.getUserId() == friendship.getFriendId()) {
+            throw new ValidationException("Пользователь не может добавить самого себя в друзья");
+        }
+    }
+
     public User updateUser(User user) {
         checkUserExists(user.getId());
         return userStorage.updateUser(user);
@@ -71,8 +175,16 @@ public class UserService {
         return userStorage.getAllUsers();
     }
 
+    public List<User> getUsers(long afterId, int limit) {
+        return userStorage.getUsers(afterId, limit);
+    }
+
+    public void streamUsers(long afterId, Consumer<User> consumer) {
+        userStorage.streamUsers(afterId, consumer);
+    }
+
     private void checkUserExists(long userId) {
-        if (!userStorage.getUserById(userId).isPresent()) {
+        if (!userStorage.userExists(userId)) {
             throw new NotFoundException("Пользователь с ID " + userId + " не найден");
         }
     }
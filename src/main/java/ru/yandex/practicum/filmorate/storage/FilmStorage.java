@@ -2,24 +2,81 @@ package ru.yandex.practicum.filmorate.storage;
 
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
     List<Film> getAllFilms();
 
+    List<Film> getFilms(long afterId, int limit);
+
+    List<Long> getFilmIds(long afterId, int limit);
+
+    void streamFilms(long afterId, Consumer<Film> consumer);
+
     Optional<Film> getFilmById(long id);
 
+    boolean filmExists(long id);
+
+    Optional<Long> getFilmVersion(long id);
+
     Film createFilm(Film film);
 
     Film updateFilm(Film film);
 
+    /**
+     * Пакетная вставка фильмов вместе с их жанрами. Проставляет фильмам сгенерированные ID.
+     */
+    List<Film> createFilms(List<Film> films);
+
     void deleteFilm(long id);
 
-    void addLike(long filmId, long userId);
+    boolean addLike(long filmId, long userId);
+
+    boolean removeLike(long filmId, long userId);
+
+    /**
+     * Снимает все лайки пользователя перед его удалением.
+     */
+    void removeUserLikes(long userId);
 
-    void removeLike(long filmId, long userId);
+    /**
+     * Записывает отложенные лайки. Вызывается перед удалением фильма или пользователя и перед пакетной
+     * вставкой лайков вне их транзакции, чтобы сброс буфера не попал в её откат.
+     */
+    default void flushPendingLikes() {
+    }
+
+    /**
+     * Пакетная вставка лайков. Возвращает только те лайки, которых ещё не было.
+     */
+    List<Like> addLikes(List<Like> likes);
 
     List<Film> getPopularFilms(int count);
+
+    List<Film> getPopularFilms(int count, Integer genreId, Integer year);
+
+    List<Long> getPopularFilmIds(int count, Integer genreId, Integer year);
+
+    List<Film> getFilmsByIds(List<Long> ids);
+
+    Map<Long, Integer> getLikeCounts(Collection<Long> filmIds);
+
+    /**
+     * Дешёвый отпечаток содержимого таблицы фильмов для проверки актуальности сохранённых индексов:
+     * число фильмов, максимальный ID и сумма версий, которая растёт при любом обновлении фильма.
+     */
+    String getCatalogFingerprint();
+
+    void forEachLike(LikeConsumer consumer);
+
+    @FunctionalInterface
+    interface LikeConsumer {
+        void accept(long filmId, long userId);
+    }
 }
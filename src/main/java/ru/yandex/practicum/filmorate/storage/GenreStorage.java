@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Genre;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -13,9 +14,9 @@ public interface GenreStorage {
 
     List<Genre> getFilmGenres(long filmId);
 
-    void addGenreToFilm(long filmId, int genreId);
-
-    void removeGenresFromFilm(long filmId);
+    void replaceFilmGenres(long filmId, Collection<Integer> genreIds);
 
     Map<Long, List<Genre>> getGenresForFilms(List<Long> filmIds);
+
+    void refresh();
 }
@@ -11,4 +11,6 @@ public interface RatingsStorage {
     Optional<Ratings> getRatingById(int id);
 
     Ratings getFilmRating(long filmId);
+
+    void refresh();
 }
@@ -1,26 +1,52 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface UserStorage {
     List<User> getAllUsers();
 
+    List<User> getUsers(long afterId, int limit);
+
+    void streamUsers(long afterId, Consumer<User> consumer);
+
     Optional<User> getUserById(long id);
 
+    boolean userExists(long id);
+
+    Optional<Long> getUserVersion(long id);
+
     User createUser(User user);
 
     User updateUser(User user);
 
+    /**
+     * Пакетная вставка пользователей. Проставляет пользователям сгенерированные ID.
+     */
+    List<User> createUsers(List<User> users);
+
+    /**
+     * Удаляет пользователя вместе с его дружбой в обе стороны. Лайки снимаются заранее через
+     * FilmStorage.removeUserLikes, чтобы обновился индекс популярности.
+     */
     void deleteUser(long id);
 
-    void addFriend(long userId, long friendId);
+    boolean addFriend(long userId, long friendId);
+
+    boolean removeFriend(long userId, long friendId);
 
-    void removeFriend(long userId, long friendId);
+    /**
+     * Пакетное добавление дружбы. Возвращает число добавленных связей.
+     */
+    int addFriends(List<Friendship> friendships);
 
     List<User> getFriends(long userId);
 
     List<User> getCommonFriends(long userId, long otherUserId);
+
+    List<User> getFriendSuggestions(long userId, int limit);
 }
@@ -0,0 +1,10 @@
+package ru.yandex.practicum.filmorate.storage.inmemory;
+
+import java.time.LocalDate;
+
+/**
+ * Неизменяемая строка фильма. Жанры — отсортированные ID без повторов, ratingId 0 — рейтинг не задан.
+ */
+record FilmRecord(long id, String name, String description, LocalDate releaseDate, int duration, int ratingId,
+                  int[] genreIds, long version) {
+}
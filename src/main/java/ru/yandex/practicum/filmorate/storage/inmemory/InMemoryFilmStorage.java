@@ -0,0 +1,259 @@
+package ru.yandex.practicum.filmorate.storage.inmemory;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.Ratings;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+@Repository
+@ConditionalOnProperty(name = "filmorate.storage.engine", havingValue = "memory")
+public class InMemoryFilmStorage implements FilmStorage {
+    private static final int[] NO_GENRES = new int[0];
+
+    private final MemoryStore store;
+
+    @Autowired
+    public InMemoryFilmStorage(MemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public List<Film> getAllFilms() {
+        return getFilms(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Film> getFilms(long afterId, int limit) {
+        List<Film> films = new ArrayList<>();
+        long lastId = store.lastFilmId();
+        for (long id = Math.max(afterId, 0) + 1; id <= lastId && films.size() < limit; id++) {
+            FilmRecord film = store.film(id);
+            if (film != null) {
+                films.add(toFilm(film, true));
+            }
+        }
+        return films;
+    }
+
+    @Override
+    public List<Long> getFilmIds(long afterId, int limit) {
+        List<Long> ids = new ArrayList<>();
+        long lastId = store.lastFilmId();
+        for (long id = Math.max(afterId, 0) + 1; id <= lastId && ids.size() < limit; id++) {
+            if (store.film(id) != null) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public void streamFilms(long afterId, Consumer<Film> consumer) {
+        long lastId = store.lastFilmId();
+        for (long id = Math.max(afterId, 0) + 1; id <= lastId; id++) {
+            FilmRecord film = store.film(id);
+            if (film != null) {
+                consumer.accept(toFilm(film, true));
+            }
+        }
+    }
+
+    @Override
+    public Optional<Film> getFilmById(long id) {
+        return Optional.ofNullable(store.film(id)).map(film -> toFilm(film, true));
+    }
+
+    @Override
+    public boolean filmExists(long id) {
+        return store.film(id) != null;
+    }
+
+    @Override
+    public Optional<Long> getFilmVersion(long id) {
+        return Optional.ofNullable(store.film(id)).map(FilmRecord::version);
+    }
+
+    /**
+     * Жанры фильма записываются вместе со строкой, последующий GenreStorage.replaceFilmGenres
+     * с тем же набором ничего не меняет.
+     */
+    @Override
+    public Film createFilm(Film film) {
+        FilmRecord created = store.createFilm(toRecord(film, genreIds(film, NO_GENRES)));
+        film.setId(created.id());
+        return film;
+    }
+
+    /**
+     * Строка и жанры (если они заданы) меняются одной записью с новой версией, иначе читатель мог бы
+     * закэшировать новую версию фильма со старыми жанрами до вызова GenreStorage.replaceFilmGenres.
+     */
+    @Override
+    public Film updateFilm(Film film) {
+        FilmRecord updated = store.updateFilm(film.getId(), current -> new FilmRecord(current.id(), film.getName(),
+                film.getDescription(), film.getReleaseDate(), film.getDuration(), film.getMpa().getId(),
+                genreIds(film, current.genreIds()), current.version() + 1));
+        if (updated == null) {
+            throw new NotFoundException("Фильм с ID " + film.getId() + " не найден");
+        }
+        film.setVersion(updated.version());
+        return film;
+    }
+
+    @Override
+    public List<Film> createFilms(List<Film> films) {
+        for (Film film : films) {
+            film.setId(store.createFilm(toRecord(film, genreIds(film, NO_GENRES))).id());
+        }
+        return films;
+    }
+
+    private static int[] genreIds(Film film, int[] missing) {
+        if (film.getGenres() == null) {
+            return missing;
+        }
+        return film.getGenres().stream()
+                .mapToInt(Genre::getId)
+                .distinct()
+                .sorted()
+                .toArray();
+    }
+
+    @Override
+    public void deleteFilm(long id) {
+        store.deleteFilm(id);
+    }
+
+    @Override
+    public boolean addLike(long filmId, long userId) {
+        return store.addLike(filmId, userId);
+    }
+
+    @Override
+    public boolean removeLike(long filmId, long userId) {
+        return store.removeLike(filmId, userId);
+    }
+
+    @Override
+    public void removeUserLikes(long userId) {
+        for (long filmId : store.likedFilms(userId)) {
+            store.removeLike(filmId, userId);
+        }
+    }
+
+    /**
+     * Ссылки проверяются до записи, чтобы пакет с ошибкой, как и в БД, не записался частично.
+     */
+    @Override
+    public List<Like> addLikes(List<Like> likes) {
+        for (Like like : likes) {
+            if (store.film(like.getFilmId()) == null || store.user(like.getUserId()) == null) {
+                throw new DataIntegrityViolationException(
+                        "Фильм " + like.getFilmId() + " или пользователь " + like.getUserId() + " не существует");
+            }
+        }
+        List<Like> added = new ArrayList<>(likes.size());
+        for (Like like : likes) {
+            if (store.addLike(like.getFilmId(), like.getUserId())) {
+                added.add(like);
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count) {
+        return getPopularFilms(count, null, null);
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer year) {
+        return getFilmsByIds(getPopularFilmIds(count, genreId, year));
+    }
+
+    @Override
+    public List<Long> getPopularFilmIds(int count, Integer genreId, Integer year) {
+        return store.likesIndex().top(count, genreId, year);
+    }
+
+    /**
+     * Фильмы без жанров, в порядке переданных ID: жанры подгружаются отдельно, как и у реализации на БД.
+     */
+    @Override
+    public List<Film> getFilmsByIds(List<Long> ids) {
+        List<Film> films = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            FilmRecord film = store.film(id);
+            if (film != null) {
+                films.add(toFilm(film, false));
+            }
+        }
+        return films;
+    }
+
+    @Override
+    public Map<Long, Integer> getLikeCounts(Collection<Long> filmIds) {
+        Map<Long, Integer> result = new HashMap<>(filmIds.size() * 2);
+        for (Long filmId : filmIds) {
+            result.put(filmId, store.likesIndex().getLikes(filmId));
+        }
+        return result;
+    }
+
+    @Override
+    public String getCatalogFingerprint() {
+        long[] totals = new long[3];
+        store.forEachFilm((id, film) -> {
+            totals[0]++;
+            totals[1] = Math.max(totals[1], id);
+            totals[2] += film.version();
+        });
+        return totals[0] + ":" + totals[1] + ":" + totals[2];
+    }
+
+    @Override
+    public void forEachLike(LikeConsumer consumer) {
+        store.forEachLike(consumer);
+    }
+
+    private Film toFilm(FilmRecord film, boolean withGenres) {
+        Film result = Film.builder()
+                .id(film.id())
+                .name(film.name())
+                .description(film.description())
+                .releaseDate(film.releaseDate())
+                .duration(film.duration())
+                .mpa(new Ratings(film.ratingId(), store.ratings().get(film.ratingId())
+                        .map(Ratings::getName)
+                        .orElse(null)))
+                .version(film.version())
+                .build();
+        if (withGenres) {
+            List<Genre> genres = new ArrayList<>(film.genreIds().length);
+            for (int genreId : film.genreIds()) {
+                genres.add(new Genre(genreId, store.genres().get(genreId).map(Genre::getName).orElse(null)));
+            }
+            result.setGenres(genres);
+        }
+        return result;
+    }
+
+    private static FilmRecord toRecord(Film film, int[] genreIds) {
+        return new FilmRecord(0, film.getName(), film.getDescription(), film.getReleaseDate(), film.getDuration(),
+                film.getMpa().getId(), genreIds, 0);
+    }
+}
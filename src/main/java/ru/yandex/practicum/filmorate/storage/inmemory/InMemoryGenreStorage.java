@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate.storage.inmemory;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Repository
+@ConditionalOnProperty(name = "filmorate.storage.engine", havingValue = "memory")
+public class InMemoryGenreStorage implements GenreStorage {
+    private final MemoryStore store;
+
+    @Autowired
+    public InMemoryGenreStorage(MemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public List<Genre> getAllGenres() {
+        return store.genres().getAll();
+    }
+
+    @Override
+    public Optional<Genre> getGenreById(int id) {
+        return store.genres().get(id);
+    }
+
+    @Override
+    public List<Genre> getFilmGenres(long filmId) {
+        FilmRecord film = store.film(filmId);
+        return film == null ? new ArrayList<>() : toGenres(film.genreIds());
+    }
+
+    /**
+     * Жанры хранятся в строке фильма, поэтому замена — это запись новой строки той же версии, как и в БД.
+     * FilmService меняет жанры вместе со строкой через FilmStorage, и здесь совпадающий набор ничего не пишет.
+     */
+    @Override
+    public void replaceFilmGenres(long filmId, Collection<Integer> genreIds) {
+        int[] sorted = genreIds.stream().mapToInt(Integer::intValue).distinct().sorted().toArray();
+        for (int genreId : sorted) {
+            if (store.genres().get(genreId).isEmpty()) {
+                throw new DataIntegrityViolationException("Жанр " + genreId + " не существует");
+            }
+        }
+        FilmRecord stored = store.film(filmId);
+        if (stored != null && Arrays.equals(stored.genreIds(), sorted)) {
+            return;
+        }
+        FilmRecord updated = store.updateFilm(filmId, current -> new FilmRecord(current.id(), current.name(),
+                current.description(), current.releaseDate(), current.duration(), current.ratingId(), sorted,
+                current.version()));
+        if (updated == null && sorted.length > 0) {
+            throw new DataIntegrityViolationException("Фильм " + filmId + " не существует");
+        }
+    }
+
+    @Override
+    public Map<Long, List<Genre>> getGenresForFilms(List<Long> filmIds) {
+        Map<Long, List<Genre>> result = new HashMap<>(filmIds.size() * 2);
+        for (Long filmId : filmIds) {
+            FilmRecord film = store.film(filmId);
+            if (film != null && film.genreIds().length > 0) {
+                result.put(filmId, toGenres(film.genreIds()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Справочник живёт в MemoryStore и меняется только через него, перечитывать нечего.
+     */
+    @Override
+    public void refresh() {
+    }
+
+    private List<Genre> toGenres(int[] genreIds) {
+        List<Genre> genres = new ArrayList<>(genreIds.length);
+        for (int genreId : genreIds) {
+            store.genres().get(genreId).ifPresent(genre -> genres.add(new Genre(genre.getId(), genre.getName())));
+        }
+        return genres;
+    }
+}
@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.storage.inmemory;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.Ratings;
+import ru.yandex.practicum.filmorate.storage.RatingsStorage;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+@ConditionalOnProperty(name = "filmorate.storage.engine", havingValue = "memory")
+public class InMemoryRatingsStorage implements RatingsStorage {
+    private final MemoryStore store;
+
+    @Autowired
+    public InMemoryRatingsStorage(MemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public List<Ratings> getAllRatings() {
+        return store.ratings().getAll();
+    }
+
+    @Override
+    public Optional<Ratings> getRatingById(int id) {
+        return store.ratings().get(id);
+    }
+
+    /**
+     * Как и queryForObject в реализации на БД, для несуществующего фильма бросает EmptyResultDataAccessException.
+     */
+    @Override
+    public Ratings getFilmRating(long filmId) {
+        FilmRecord film = store.film(filmId);
+        Optional<Ratings> rating = film == null ? Optional.empty() : store.ratings().get(film.ratingId());
+        return rating.map(r -> new Ratings(r.getId(), r.getName()))
+                .orElseThrow(() -> new EmptyResultDataAccessException(1));
+    }
+
+    @Override
+    public void refresh() {
+    }
+}
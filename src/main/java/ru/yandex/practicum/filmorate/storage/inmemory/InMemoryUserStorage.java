@@ -0,0 +1,162 @@
+package ru.yandex.practicum.filmorate.storage.inmemory;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+@Repository
+@ConditionalOnProperty(name = "filmorate.storage.engine", havingValue = "memory")
+public class InMemoryUserStorage implements UserStorage {
+    private final MemoryStore store;
+
+    @Autowired
+    public InMemoryUserStorage(MemoryStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public List<User> getAllUsers() {
+        return getUsers(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<User> getUsers(long afterId, int limit) {
+        List<User> users = new ArrayList<>();
+        long lastId = store.lastUserId();
+        for (long id = Math.max(afterId, 0) + 1; id <= lastId && users.size() < limit; id++) {
+            UserRecord user = store.user(id);
+            if (user != null) {
+                users.add(toUser(user));
+            }
+        }
+        return users;
+    }
+
+    @Override
+    public void streamUsers(long afterId, Consumer<User> consumer) {
+        long lastId = store.lastUserId();
+        for (long id = Math.max(afterId, 0) + 1; id <= lastId; id++) {
+            UserRecord user = store.user(id);
+            if (user != null) {
+                consumer.accept(toUser(user));
+            }
+        }
+    }
+
+    @Override
+    public Optional<User> getUserById(long id) {
+        return Optional.ofNullable(store.user(id)).map(InMemoryUserStorage::toUser);
+    }
+
+    @Override
+    public boolean userExists(long id) {
+        return store.user(id) != null;
+    }
+
+    @Override
+    public Optional<Long> getUserVersion(long id) {
+        return Optional.ofNullable(store.user(id)).map(UserRecord::version);
+    }
+
+    @Override
+    public User createUser(User user) {
+        user.setId(store.createUser(toRecord(user)).id());
+        return user;
+    }
+
+    @Override
+    public User updateUser(User user) {
+        UserRecord updated = store.updateUser(user.getId(), current -> new UserRecord(current.id(),
+                user.getEmail(), user.getLogin(), user.getName(), user.getBirthday(), current.version() + 1));
+        user.setVersion(updated == null ? 0 : updated.version());
+        return user;
+    }
+
+    @Override
+    public List<User> createUsers(List<User> users) {
+        users.forEach(this::createUser);
+        return users;
+    }
+
+    @Override
+    public void deleteUser(long id) {
+        store.deleteUser(id);
+    }
+
+    @Override
+    public boolean addFriend(long userId, long friendId) {
+        return store.addFriend(userId, friendId);
+    }
+
+    @Override
+    public boolean removeFriend(long userId, long friendId) {
+        return store.removeFriend(userId, friendId);
+    }
+
+    @Override
+    public int addFriends(List<Friendship> friendships) {
+        for (Friendship friendship : friendships) {
+            if (store.user(friendship.getUserId()) == null || store.user(friendship.getFriendId()) == null) {
+                throw new DataIntegrityViolationException("Пользователь " + friendship.getUserId() + " или "
+                        + friendship.getFriendId() + " не существует");
+            }
+        }
+        int added = 0;
+        for (Friendship friendship : friendships) {
+            if (store.addFriend(friendship.getUserId(), friendship.getFriendId())) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public List<User> getFriends(long userId) {
+        return getUsersByIds(store.friendGraph().getFriends(userId));
+    }
+
+    @Override
+    public List<User> getCommonFriends(long userId, long otherUserId) {
+        return getUsersByIds(store.friendGraph().getCommonFriends(userId, otherUserId));
+    }
+
+    @Override
+    public List<User> getFriendSuggestions(long userId, int limit) {
+        return getUsersByIds(store.friendGraph().suggestFriends(userId, limit));
+    }
+
+    private List<User> getUsersByIds(long[] ids) {
+        List<User> users = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            UserRecord user = store.user(id);
+            if (user != null) {
+                users.add(toUser(user));
+            }
+        }
+        return users;
+    }
+
+    private static User toUser(UserRecord user) {
+        return User.builder()
+                .id(user.id())
+                .email(user.email())
+                .login(user.login())
+                .name(user.name())
+                .birthday(user.birthday())
+                .version(user.version())
+                .build();
+    }
+
+    private static UserRecord toRecord(User user) {
+        return new UserRecord(0, user.getEmail(), user.getLogin(), user.getName(), user.getBirthday(), 0);
+    }
+}
@@ -0,0 +1,856 @@
+package ru.yandex.practicum.filmorate.storage.inmemory;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.index.FilmLikesIndex;
+import ru.yandex.practicum.filmorate.index.FilmLikesIndex.FilmSegments;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Ratings;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Данные хранилища в памяти: фильмы, пользователи, лайки и дружба в отображениях с примитивными ключами.
+ * Каждое изменение сначала пишется в журнал и только потом применяется. Фильмы и пользователи восстанавливаются
+ * из последнего снимка и журнала упреждающей записи после него, лайки и дружба — из отдельного
+ * {@link RelationLog} с записями фиксированной длины, который сжимается в фоне.
+ * <p>
+ * Изменения одной сущности упорядочены блокировкой её полосы, поэтому порядок в журнале совпадает
+ * с порядком применения. Удаления фильмов и пользователей затрагивают чужие полосы и берут общую
+ * блокировку на запись, остальные изменения — на чтение. Чтение данных идёт без блокировок.
+ * <p>
+ * Транзакций нет: каждое изменение применяется и пишется в журнал сразу, поэтому методы сервисов
+ * с {@code @Transactional} на этом движке не атомарны и при ошибке посередине не откатываются.
+ * Строка фильма вместе с жанрами записывается одним изменением, чтобы читатель не увидел новую
+ * версию фильма со старыми жанрами.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.engine", havingValue = "memory")
+public class MemoryStore {
+    private static final int MAP_STRIPES = 64;
+    private static final int LOCK_STRIPES = 256;
+    private static final int SNAPSHOT_MAGIC = 0x464D5332;
+    private static final long MIN_COMPACTION_RECORDS = 100_000;
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final long[] NO_IDS = new long[0];
+    private static final List<Ratings> DEFAULT_RATINGS = List.of(new Ratings(1, "G"), new Ratings(2, "PG"),
+            new Ratings(3, "PG-13"), new Ratings(4, "R"), new Ratings(5, "NC-17"));
+    private static final List<Genre> DEFAULT_GENRES = List.of(new Genre(1, "Комедия"), new Genre(2, "Драма"),
+            new Genre(3, "Мультфильм"), new Genre(4, "Триллер"), new Genre(5, "Документальный"),
+            new Genre(6, "Боевик"));
+
+    private static final byte FILM_PUT = 1;
+    private static final byte FILM_DELETE = 2;
+    private static final byte USER_PUT = 3;
+    private static final byte USER_DELETE = 4;
+
+    private static final int LIKE_ADD = 1;
+    private static final int LIKE_REMOVE = 2;
+    private static final int FRIEND_ADD = 3;
+    private static final int FRIEND_REMOVE = 4;
+
+    private final Path directory;
+    private final long fsyncIntervalMs;
+    private final long snapshotIntervalSeconds;
+    private final int relationSegmentBytes;
+    private final long compactionCheckSeconds;
+    private final StripedLongMap<FilmRecord> films = new StripedLongMap<>(MAP_STRIPES);
+    private final StripedLongMap<UserRecord> users = new StripedLongMap<>(MAP_STRIPES);
+    private final StripedLongMap<long[]> likesByFilm = new StripedLongMap<>(MAP_STRIPES);
+    private final StripedLongMap<long[]> likesByUser = new StripedLongMap<>(MAP_STRIPES);
+    private final FriendGraph friendGraph = new FriendGraph();
+    private final FilmLikesIndex likesIndex = new FilmLikesIndex();
+    private final ReferenceDataCache<Genre> genres = new ReferenceDataCache<>(Genre::getId);
+    private final ReferenceDataCache<Ratings> ratings = new ReferenceDataCache<>(Ratings::getId);
+    private final AtomicLong lastFilmId = new AtomicLong();
+    private final AtomicLong lastUserId = new AtomicLong();
+    private final ReentrantReadWriteLock structureLock = new ReentrantReadWriteLock();
+    private final ReentrantLock[] filmLocks = newLocks();
+    private final ReentrantLock[] userLocks = newLocks();
+    private ScheduledExecutorService snapshotter;
+    private WriteAheadLog wal;
+    private RelationLog relationLog;
+
+    @Autowired
+    public MemoryStore(@Value("${filmorate.storage.memory.dir:./db/memory}") Path directory,
+                       @Value("${filmorate.storage.memory.fsync-interval-ms:100}") long fsyncIntervalMs,
+                       @Value("${filmorate.storage.memory.snapshot-interval-seconds:300}")
+                       long snapshotIntervalSeconds,
+                       @Value("${filmorate.storage.memory.relation-segment-bytes:67108864}")
+                       int relationSegmentBytes,
+                       @Value("${filmorate.storage.memory.compaction-check-seconds:10}")
+                       long compactionCheckSeconds) {
+        this.directory = directory;
+        this.fsyncIntervalMs = fsyncIntervalMs;
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+        this.relationSegmentBytes = relationSegmentBytes;
+        this.compactionCheckSeconds = compactionCheckSeconds;
+    }
+
+    /**
+     * Восстанавливает состояние из снимка и журналов и открывает новые сегменты журналов.
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        long startedAt = System.nanoTime();
+        Files.createDirectories(directory);
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        long nextSegment = 1;
+        if (Files.exists(snapshot)) {
+            nextSegment = readSnapshot(snapshot);
+        } else {
+            ratings.load(DEFAULT_RATINGS);
+            genres.load(DEFAULT_GENRES);
+        }
+        long firstSegment = nextSegment;
+        List<Long> segments = WriteAheadLog.segments(directory);
+        long replayed = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            long segment = segments.get(i);
+            if (segment >= firstSegment) {
+                replayed += WriteAheadLog.replay(directory, segment, i == segments.size() - 1, this::applyRecord);
+                nextSegment = segment + 1;
+            }
+        }
+        wal = new WriteAheadLog(directory, nextSegment, fsyncIntervalMs);
+        wal.deleteSegmentsBefore(firstSegment);
+
+        RelationReplay relations = new RelationReplay();
+        relationLog = new RelationLog(directory, relationSegmentBytes, fsyncIntervalMs);
+        long relationRecords = relationLog.recover(relations::accept);
+        long orphans = relations.apply();
+        rebuildDerivedIndexes();
+        log.info("Хранилище в памяти восстановлено за {} мс: фильмов {}, пользователей {}, записей журнала {}, "
+                        + "записей журнала связей {}", (System.nanoTime() - startedAt) / 1_000_000, films.size(),
+                users.size(), replayed, relationRecords);
+        if (orphans > 0) {
+            // Создание этих фильмов или пользователей пропало с хвостом журнала, и их ID будут выданы снова:
+            // база журнала связей пишется до первых изменений, чтобы старые связи не достались новым сущностям
+            log.warn("В журнале связей {} связей с ещё не выданными ID, журнал связей будет сжат", orphans);
+            compactRelations();
+        }
+
+        if (snapshotIntervalSeconds > 0 || compactionCheckSeconds > 0) {
+            snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "memory-store-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        if (snapshotIntervalSeconds > 0) {
+            snapshotter.scheduleWithFixedDelay(this::snapshotQuietly, snapshotIntervalSeconds,
+                    snapshotIntervalSeconds, TimeUnit.SECONDS);
+        }
+        if (compactionCheckSeconds > 0) {
+            snapshotter.scheduleWithFixedDelay(this::compactIfNeeded, compactionCheckSeconds,
+                    compactionCheckSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+        }
+        if (wal == null) {
+            return;
+        }
+        snapshot();
+        wal.close();
+        relationLog.close();
+    }
+
+    /**
+     * Записывает снимок и удаляет вошедшие в него сегменты журнала. Изменения останавливаются только
+     * на время переключения сегмента и копирования ссылок: строки неизменяемы, файл пишется уже без блокировки.
+     */
+    public synchronized void snapshot() throws IOException {
+        long startedAt = System.nanoTime();
+        SnapshotState state;
+        structureLock.writeLock().lock();
+        try {
+            state = captureState(wal.rotate());
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+        Path target = directory.resolve(SNAPSHOT_FILE);
+        Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporary)), crc))) {
+            writeSnapshot(out, state);
+            out.flush();
+            out.writeLong(crc.getValue());
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        wal.deleteSegmentsBefore(state.firstSegment());
+        log.info("Снимок хранилища записан за {} мс: фильмов {}, пользователей {}",
+                (System.nanoTime() - startedAt) / 1_000_000, state.films().size(), state.users().size());
+    }
+
+    /**
+     * Переписывает журнал связей: живые лайки и дружба ложатся в базу, сегменты до неё удаляются.
+     * Как и снимок, останавливает изменения только на время переключения сегмента и сбора ссылок.
+     */
+    public synchronized void compactRelations() throws IOException {
+        long startedAt = System.nanoTime();
+        long firstSegment;
+        List<Long> likedFilms = new ArrayList<>(likesByFilm.size());
+        List<long[]> likeLists = new ArrayList<>(likesByFilm.size());
+        List<Long> userIds = new ArrayList<>(users.size());
+        List<long[]> friendLists = new ArrayList<>(users.size());
+        structureLock.writeLock().lock();
+        try {
+            firstSegment = relationLog.rotate();
+            likesByFilm.forEach((filmId, likedBy) -> {
+                likedFilms.add(filmId);
+                likeLists.add(likedBy);
+            });
+            users.forEach((userId, user) -> {
+                long[] friends = friendGraph.getFriends(userId);
+                if (friends.length > 0) {
+                    userIds.add(userId);
+                    friendLists.add(friends);
+                }
+            });
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+        relationLog.writeBase(firstSegment, sink -> {
+            for (int i = 0; i < likedFilms.size(); i++) {
+                for (long userId : likeLists.get(i)) {
+                    sink.accept(LIKE_ADD, likedFilms.get(i), userId);
+                }
+            }
+            for (int i = 0; i < userIds.size(); i++) {
+                for (long friendId : friendLists.get(i)) {
+                    sink.accept(FRIEND_ADD, userIds.get(i), friendId);
+                }
+            }
+        });
+        log.info("Журнал связей сжат за {} мс: записей в базе {}",
+                (System.nanoTime() - startedAt) / 1_000_000, relationLog.baseRecords());
+    }
+
+    FilmRecord film(long id) {
+        return films.get(id);
+    }
+
+    UserRecord user(long id) {
+        return users.get(id);
+    }
+
+    long lastFilmId() {
+        return lastFilmId.get();
+    }
+
+    long lastUserId() {
+        return lastUserId.get();
+    }
+
+    void forEachFilm(StripedLongMap.Visitor<FilmRecord> visitor) {
+        films.forEach(visitor);
+    }
+
+    void forEachLike(FilmStorage.LikeConsumer consumer) {
+        likesByFilm.forEach((filmId, userIds) -> {
+            for (long userId : userIds) {
+                consumer.accept(filmId, userId);
+            }
+        });
+    }
+
+    long[] likedFilms(long userId) {
+        long[] filmIds = likesByUser.get(userId);
+        return filmIds == null ? NO_IDS : filmIds;
+    }
+
+    FilmLikesIndex likesIndex() {
+        return likesIndex;
+    }
+
+    FriendGraph friendGraph() {
+        return friendGraph;
+    }
+
+    ReferenceDataCache<Genre> genres() {
+        return genres;
+    }
+
+    ReferenceDataCache<Ratings> ratings() {
+        return ratings;
+    }
+
+    /**
+     * Сохраняет фильм под новым ID; ID и версия из шаблона игнорируются.
+     */
+    FilmRecord createFilm(FilmRecord template) {
+        long id = lastFilmId.incrementAndGet();
+        FilmRecord film = new FilmRecord(id, template.name(), template.description(), template.releaseDate(),
+                template.duration(), template.ratingId(), template.genreIds(), 0);
+        return mutate(filmLock(id), () -> {
+            log(FILM_PUT, out -> RecordCodec.writeFilm(out, film));
+            applyFilm(film);
+            return film;
+        });
+    }
+
+    /**
+     * Заменяет фильм результатом функции от текущей строки. Возвращает null, если фильма нет.
+     */
+    FilmRecord updateFilm(long id, UnaryOperator<FilmRecord> change) {
+        return mutate(filmLock(id), () -> {
+            FilmRecord current = films.get(id);
+            if (current == null) {
+                return null;
+            }
+            FilmRecord updated = change.apply(current);
+            log(FILM_PUT, out -> RecordCodec.writeFilm(out, updated));
+            applyFilm(updated);
+            return updated;
+        });
+    }
+
+    boolean deleteFilm(long id) {
+        return exclusive(() -> {
+            if (films.get(id) == null) {
+                return false;
+            }
+            log(FILM_DELETE, out -> out.writeLong(id));
+            applyFilmDelete(id);
+            return true;
+        });
+    }
+
+    UserRecord createUser(UserRecord template) {
+        long id = lastUserId.incrementAndGet();
+        UserRecord user = new UserRecord(id, template.email(), template.login(), template.name(),
+                template.birthday(), 0);
+        return mutate(userLock(id), () -> {
+            log(USER_PUT, out -> RecordCodec.writeUser(out, user));
+            applyUser(user);
+            return user;
+        });
+    }
+
+    UserRecord updateUser(long id, UnaryOperator<UserRecord> change) {
+        return mutate(userLock(id), () -> {
+            UserRecord current = users.get(id);
+            if (current == null) {
+                return null;
+            }
+            UserRecord updated = change.apply(current);
+            log(USER_PUT, out -> RecordCodec.writeUser(out, updated));
+            applyUser(updated);
+            return updated;
+        });
+    }
+
+    boolean deleteUser(long id) {
+        return exclusive(() -> {
+            if (users.get(id) == null) {
+                return false;
+            }
+            log(USER_DELETE, out -> out.writeLong(id));
+            applyUserDelete(id);
+            return true;
+        });
+    }
+
+    /**
+     * Как и внешний ключ в БД, отклоняет лайк несуществующего фильма или пользователя.
+     * Изменения лайков и дружбы видны сразу после записи в журнал, а возврат ждёт сброса на диск:
+     * блокировки к этому моменту уже отпущены, поэтому ожидающие сброса не мешают друг другу.
+     */
+    boolean addLike(long filmId, long userId) {
+        return awaitDurable(mutate(filmLock(filmId), () -> {
+            if (films.get(filmId) == null || users.get(userId) == null) {
+                throw new DataIntegrityViolationException(
+                        "Фильм " + filmId + " или пользователь " + userId + " не существует");
+            }
+            if (contains(likesByFilm.get(filmId), userId)) {
+                return 0L;
+            }
+            long ticket = relationLog.append(LIKE_ADD, filmId, userId);
+            applyLike(filmId, userId, true);
+            return ticket;
+        }));
+    }
+
+    boolean removeLike(long filmId, long userId) {
+        return awaitDurable(mutate(filmLock(filmId), () -> {
+            if (!contains(likesByFilm.get(filmId), userId)) {
+                return 0L;
+            }
+            long ticket = relationLog.append(LIKE_REMOVE, filmId, userId);
+            applyLike(filmId, userId, false);
+            return ticket;
+        }));
+    }
+
+    boolean addFriend(long userId, long friendId) {
+        return awaitDurable(mutate(userLock(userId), () -> {
+            if (users.get(userId) == null || users.get(friendId) == null) {
+                throw new DataIntegrityViolationException(
+                        "Пользователь " + userId + " или " + friendId + " не существует");
+            }
+            if (contains(friendGraph.getFriends(userId), friendId)) {
+                return 0L;
+            }
+            long ticket = relationLog.append(FRIEND_ADD, userId, friendId);
+            friendGraph.addEdge(userId, friendId);
+            return ticket;
+        }));
+    }
+
+    boolean removeFriend(long userId, long friendId) {
+        return awaitDurable(mutate(userLock(userId), () -> {
+            if (!contains(friendGraph.getFriends(userId), friendId)) {
+                return 0L;
+            }
+            long ticket = relationLog.append(FRIEND_REMOVE, userId, friendId);
+            friendGraph.removeEdge(userId, friendId);
+            return ticket;
+        }));
+    }
+
+    /**
+     * Номер 0 означает, что изменения не было.
+     */
+    private boolean awaitDurable(long ticket) {
+        if (ticket == 0) {
+            return false;
+        }
+        relationLog.awaitDurable(ticket);
+        return true;
+    }
+
+    private <T> T mutate(ReentrantLock entityLock, Supplier<T> action) {
+        structureLock.readLock().lock();
+        entityLock.lock();
+        try {
+            return action.get();
+        } finally {
+            entityLock.unlock();
+            structureLock.readLock().unlock();
+        }
+    }
+
+    private <T> T exclusive(Supplier<T> action) {
+        structureLock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    private void log(byte operation, RecordWriter writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(operation);
+            writer.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        wal.append(bytes.toByteArray());
+    }
+
+    private void applyRecord(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte operation = in.readByte();
+        switch (operation) {
+            case FILM_PUT -> applyFilm(RecordCodec.readFilm(in));
+            case FILM_DELETE -> applyFilmDelete(in.readLong());
+            case USER_PUT -> applyUser(RecordCodec.readUser(in));
+            case USER_DELETE -> applyUserDelete(in.readLong());
+            default -> throw new IOException("Неизвестная операция журнала: " + operation);
+        }
+    }
+
+    private void applyFilm(FilmRecord film) {
+        films.put(film.id(), film);
+        lastFilmId.accumulateAndGet(film.id(), Math::max);
+        likesIndex.addFilm(film.id(), segmentsOf(film));
+    }
+
+    private void applyFilmDelete(long filmId) {
+        long[] likedBy = likesByFilm.remove(filmId);
+        if (likedBy != null) {
+            for (long userId : likedBy) {
+                likesByUser.compute(userId, (id, filmIds) -> without(filmIds, filmId));
+            }
+        }
+        films.remove(filmId);
+        likesIndex.removeFilm(filmId);
+    }
+
+    private void applyUser(UserRecord user) {
+        users.put(user.id(), user);
+        lastUserId.accumulateAndGet(user.id(), Math::max);
+    }
+
+    private void applyUserDelete(long userId) {
+        long[] liked = likesByUser.remove(userId);
+        if (liked != null) {
+            for (long filmId : liked) {
+                likesByFilm.compute(filmId, (id, userIds) -> without(userIds, userId));
+                likesIndex.decrement(filmId);
+            }
+        }
+        friendGraph.removeUser(userId);
+        users.remove(userId);
+    }
+
+    private boolean applyLike(long filmId, long userId, boolean add) {
+        boolean[] changed = new boolean[1];
+        likesByFilm.compute(filmId, (id, userIds) -> {
+            long[] updated = add ? with(userIds, userId) : without(userIds, userId);
+            changed[0] = updated != userIds;
+            return updated;
+        });
+        if (!changed[0]) {
+            return false;
+        }
+        likesByUser.compute(userId, (id, filmIds) -> add ? with(filmIds, filmId) : without(filmIds, filmId));
+        if (add) {
+            likesIndex.increment(filmId);
+        } else {
+            likesIndex.decrement(filmId);
+        }
+        return true;
+    }
+
+    private SnapshotState captureState(long firstSegment) {
+        List<FilmRecord> filmRows = new ArrayList<>(films.size());
+        films.forEach((id, film) -> filmRows.add(film));
+        List<UserRecord> userRows = new ArrayList<>(users.size());
+        users.forEach((id, user) -> userRows.add(user));
+        return new SnapshotState(firstSegment, lastFilmId.get(), lastUserId.get(), ratings.getAll(),
+                genres.getAll(), filmRows, userRows);
+    }
+
+    private static void writeSnapshot(DataOutputStream out, SnapshotState state) throws IOException {
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeLong(state.firstSegment());
+        out.writeLong(state.lastFilmId());
+        out.writeLong(state.lastUserId());
+        out.writeInt(state.ratings().size());
+        for (Ratings rating : state.ratings()) {
+            out.writeInt(rating.getId());
+            RecordCodec.writeString(out, rating.getName());
+        }
+        out.writeInt(state.genres().size());
+        for (Genre genre : state.genres()) {
+            out.writeInt(genre.getId());
+            RecordCodec.writeString(out, genre.getName());
+        }
+        out.writeInt(state.films().size());
+        for (FilmRecord film : state.films()) {
+            RecordCodec.writeFilm(out, film);
+        }
+        out.writeInt(state.users().size());
+        for (UserRecord user : state.users()) {
+            RecordCodec.writeUser(out, user);
+        }
+    }
+
+    /**
+     * Загружает снимок и возвращает номер первого сегмента журнала, который в него не вошёл.
+     */
+    private long readSnapshot(Path snapshot) throws IOException {
+        CRC32 crc = new CRC32();
+        long firstSegment;
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshot)), crc))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Файл " + snapshot + " не является снимком хранилища");
+            }
+            firstSegment = in.readLong();
+            lastFilmId.set(in.readLong());
+            lastUserId.set(in.readLong());
+            List<Ratings> ratingRows = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                ratingRows.add(new Ratings(in.readInt(), RecordCodec.readString(in)));
+            }
+            ratings.load(ratingRows);
+            List<Genre> genreRows = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                genreRows.add(new Genre(in.readInt(), RecordCodec.readString(in)));
+            }
+            genres.load(genreRows);
+            for (int i = in.readInt(); i > 0; i--) {
+                FilmRecord film = RecordCodec.readFilm(in);
+                films.put(film.id(), film);
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                UserRecord user = RecordCodec.readUser(in);
+                users.put(user.id(), user);
+            }
+            long expected = crc.getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("Контрольная сумма снимка " + snapshot + " не совпадает");
+            }
+        }
+        return firstSegment;
+    }
+
+    /**
+     * Обратный индекс лайков и рейтинг строятся по загруженным данным разом, а не поэлементными вставками.
+     */
+    private void rebuildDerivedIndexes() {
+        Map<Long, int[]> counts = new HashMap<>();
+        likesByFilm.forEach((filmId, userIds) -> {
+            for (long userId : userIds) {
+                counts.computeIfAbsent(userId, id -> new int[1])[0]++;
+            }
+        });
+        Map<Long, long[]> byUser = new HashMap<>(counts.size() * 2);
+        counts.forEach((userId, count) -> {
+            byUser.put(userId, new long[count[0]]);
+            count[0] = 0;
+        });
+        likesByFilm.forEach((filmId, userIds) -> {
+            for (long userId : userIds) {
+                byUser.get(userId)[counts.get(userId)[0]++] = filmId;
+            }
+        });
+        byUser.forEach((userId, filmIds) -> {
+            Arrays.sort(filmIds);
+            likesByUser.put(userId, filmIds);
+        });
+
+        Map<Long, Integer> likeCounts = new HashMap<>();
+        Map<Long, FilmSegments> segments = new HashMap<>();
+        films.forEach((filmId, film) -> {
+            long[] likedBy = likesByFilm.get(filmId);
+            likeCounts.put(filmId, likedBy == null ? 0 : likedBy.length);
+            segments.put(filmId, segmentsOf(film));
+        });
+        likesIndex.rebuild(likeCounts, segments);
+    }
+
+    /**
+     * Сжимает журнал связей, когда записей после базы стало больше, чем в ней самой.
+     */
+    private void compactIfNeeded() {
+        if (relationLog.recordsSinceBase() <= Math.max(MIN_COMPACTION_RECORDS, relationLog.baseRecords())) {
+            return;
+        }
+        try {
+            compactRelations();
+        } catch (IOException | RuntimeException e) {
+            log.error("Не удалось сжать журнал связей", e);
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            log.error("Не удалось записать снимок хранилища", e);
+        }
+    }
+
+    private ReentrantLock filmLock(long filmId) {
+        return filmLocks[(int) (filmId & (LOCK_STRIPES - 1))];
+    }
+
+    private ReentrantLock userLock(long userId) {
+        return userLocks[(int) (userId & (LOCK_STRIPES - 1))];
+    }
+
+    private static ReentrantLock[] newLocks() {
+        ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
+
+    private static FilmSegments segmentsOf(FilmRecord film) {
+        return new FilmSegments(film.releaseDate().getYear(), film.genreIds());
+    }
+
+    private static boolean contains(long[] sorted, long id) {
+        return sorted != null && Arrays.binarySearch(sorted, id) >= 0;
+    }
+
+    private static long[] with(long[] sorted, long id) {
+        long[] current = sorted == null ? NO_IDS : sorted;
+        int position = Arrays.binarySearch(current, id);
+        if (position >= 0) {
+            return sorted;
+        }
+        int insertAt = -position - 1;
+        long[] updated = new long[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, insertAt);
+        updated[insertAt] = id;
+        System.arraycopy(current, insertAt, updated, insertAt + 1, current.length - insertAt);
+        return updated;
+    }
+
+    private static long[] without(long[] sorted, long id) {
+        int position = sorted == null ? -1 : Arrays.binarySearch(sorted, id);
+        if (position < 0) {
+            return sorted;
+        }
+        if (sorted.length == 1) {
+            return null;
+        }
+        long[] updated = new long[sorted.length - 1];
+        System.arraycopy(sorted, 0, updated, 0, position);
+        System.arraycopy(sorted, position + 1, updated, position, sorted.length - position - 1);
+        return updated;
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private record SnapshotState(long firstSegment, long lastFilmId, long lastUserId, List<Ratings> ratings,
+                                 List<Genre> genres, List<FilmRecord> films, List<UserRecord> users) {
+    }
+
+    /**
+     * Копит лайки и дружбу из журнала связей в растущих массивах и применяет их разом. Связи с удалёнными
+     * фильмами и пользователями отбрасываются: ID не переиспользуются, а удаление снимает все связи сущности.
+     * Отброшенные связи с ID больше последнего выданного (создание сущности не дошло до журнала) считаются:
+     * такие ID будут выданы снова, и эти записи нужно убрать из журнала связей.
+     */
+    private final class RelationReplay {
+        private final Map<Long, IdBuffer> likes = new HashMap<>();
+        private final Map<Long, IdBuffer> friends = new HashMap<>();
+        private long orphans;
+
+        void accept(int operation, long first, long second) throws IOException {
+            switch (operation) {
+                case LIKE_ADD -> likes.computeIfAbsent(first, id -> new IdBuffer()).add(second);
+                case LIKE_REMOVE -> remove(likes, first, second);
+                case FRIEND_ADD -> friends.computeIfAbsent(first, id -> new IdBuffer()).add(second);
+                case FRIEND_REMOVE -> remove(friends, first, second);
+                default -> throw new IOException("Неизвестная операция журнала связей: " + operation);
+            }
+        }
+
+        /**
+         * Возвращает число отброшенных связей с ещё не выданными ID.
+         */
+        long apply() {
+            likes.forEach((filmId, userIds) -> {
+                if (films.get(filmId) != null) {
+                    long[] existing = userIds.toSortedSet(this::userExists);
+                    if (existing.length > 0) {
+                        likesByFilm.put(filmId, existing);
+                    }
+                } else if (filmId > lastFilmId.get() && userIds.size() > 0) {
+                    orphans += userIds.size();
+                }
+            });
+            friends.forEach((userId, friendIds) -> {
+                if (userExists(userId)) {
+                    friendGraph.setFriends(userId, friendIds.toSortedSet(this::userExists));
+                }
+            });
+            return orphans;
+        }
+
+        private boolean userExists(long userId) {
+            if (users.get(userId) != null) {
+                return true;
+            }
+            if (userId > lastUserId.get()) {
+                orphans++;
+            }
+            return false;
+        }
+
+        private static void remove(Map<Long, IdBuffer> relations, long owner, long id) {
+            IdBuffer ids = relations.get(owner);
+            if (ids != null) {
+                ids.remove(id);
+            }
+        }
+    }
+
+    private static final class IdBuffer {
+        private long[] ids = new long[4];
+        private int size;
+
+        void add(long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        void remove(long id) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (ids[i] != id) {
+                    ids[kept++] = ids[i];
+                }
+            }
+            size = kept;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long[] toSortedSet(LongPredicate exists) {
+            long[] sorted = Arrays.copyOf(ids, size);
+            Arrays.sort(sorted);
+            int kept = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if ((i == 0 || sorted[i] != sorted[i - 1]) && exists.test(sorted[i])) {
+                    sorted[kept++] = sorted[i];
+                }
+            }
+            return kept == sorted.length ? sorted : Arrays.copyOf(sorted, kept);
+        }
+    }
+}
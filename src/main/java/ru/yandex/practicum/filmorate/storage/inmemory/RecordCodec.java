@@ -0,0 +1,77 @@
+package ru.yandex.practicum.filmorate.storage.inmemory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Двоичное представление строк хранилища, общее для журнала и снимка.
+ */
+final class RecordCodec {
+    private RecordCodec() {
+    }
+
+    static void writeFilm(DataOutput out, FilmRecord film) throws IOException {
+        out.writeLong(film.id());
+        writeString(out, film.name());
+        writeString(out, film.description());
+        out.writeLong(film.releaseDate().toEpochDay());
+        out.writeInt(film.duration());
+        out.writeInt(film.ratingId());
+        out.writeInt(film.genreIds().length);
+        for (int genreId : film.genreIds()) {
+            out.writeInt(genreId);
+        }
+        out.writeLong(film.version());
+    }
+
+    static FilmRecord readFilm(DataInput in) throws IOException {
+        long id = in.readLong();
+        String name = readString(in);
+        String description = readString(in);
+        LocalDate releaseDate = LocalDate.ofEpochDay(in.readLong());
+        int duration = in.readInt();
+        int ratingId = in.readInt();
+        int[] genreIds = new int[in.readInt()];
+        for (int i = 0; i < genreIds.length; i++) {
+            genreIds[i] = in.readInt();
+        }
+        return new FilmRecord(id, name, description, releaseDate, duration, ratingId, genreIds, in.readLong());
+    }
+
+    static void writeUser(DataOutput out, UserRecord user) throws IOException {
+        out.writeLong(user.id());
+        writeString(out, user.email());
+        writeString(out, user.login());
+        writeString(out, user.name());
+        out.writeLong(user.birthday().toEpochDay());
+        out.writeLong(user.version());
+    }
+
+    static UserRecord readUser(DataInput in) throws IOException {
+        return new UserRecord(in.readLong(), readString(in), readString(in), readString(in),
+                LocalDate.ofEpochDay(in.readLong()), in.readLong());
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
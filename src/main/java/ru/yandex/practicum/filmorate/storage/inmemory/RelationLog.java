@@ -0,0 +1,439 @@
+package ru.yandex.practicum.filmorate.storage.inmemory;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Журнал лайков и дружбы: записи фиксированной длины [операция][CRC32C][id][id] в отображённых в память
+ * сегментах rel-<номер>.log заранее заданного размера. Конец данных — первая нулевая запись.
+ * <p>
+ * При fsyncIntervalMs = 0 работает групповая фиксация: поток сброса вызывает force для всего, что успели
+ * записать к этому моменту, и будит ждущих в {@link #awaitDurable}; пока идёт сброс, следующие записи
+ * копятся для следующего. Иначе сброс идёт раз в интервал, и ожидание не нужно.
+ * <p>
+ * Сжатие: после {@link #rotate} в rel-base-<номер>.log записывается живое состояние на начало нового
+ * сегмента, и более ранние файлы удаляются. Восстановление читает последнюю базу и сегменты после неё.
+ */
+@Slf4j
+final class RelationLog implements Closeable {
+    static final int RECORD_BYTES = Integer.BYTES * 2 + Long.BYTES * 2;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("rel-(\\d+)\\.log");
+    private static final Pattern BASE_NAME = Pattern.compile("rel-base-(\\d+)\\.log");
+    private static final int BASE_BUFFER_RECORDS = 4096;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long fsyncIntervalMs;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushRequested = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private Thread flusher;
+    private ScheduledExecutorService syncer;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long segment;
+    private int position;
+    private long written;
+    private long durable;
+    private long recordsSinceBase;
+    private long baseRecords;
+    private boolean closed;
+    private RuntimeException failure;
+
+    RelationLog(Path directory, int segmentBytes, long fsyncIntervalMs) {
+        if (segmentBytes < RECORD_BYTES) {
+            throw new IllegalArgumentException("Сегмент журнала меньше одной записи: " + segmentBytes);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes - segmentBytes % RECORD_BYTES;
+        this.fsyncIntervalMs = fsyncIntervalMs;
+    }
+
+    /**
+     * Передаёт обработчику записи последней базы и сегментов после неё, затем открывает новый сегмент
+     * и запускает сброс. Возвращает число прочитанных записей.
+     */
+    long recover(RecordHandler handler) throws IOException {
+        long base = 0;
+        for (long number : list(BASE_NAME)) {
+            base = number;
+        }
+        if (base > 0) {
+            baseRecords = replay(directory.resolve(baseFile(base)), false, handler);
+        }
+        List<Long> segments = list(SEGMENT_NAME);
+        long next = Math.max(base, 1);
+        for (int i = 0; i < segments.size(); i++) {
+            long number = segments.get(i);
+            if (number >= base) {
+                boolean last = i == segments.size() - 1;
+                recordsSinceBase += replay(directory.resolve(segmentFile(number)), last, handler);
+                next = number + 1;
+            }
+        }
+        deleteBefore(base);
+        open(next);
+        if (fsyncIntervalMs <= 0) {
+            flusher = new Thread(this::flushLoop, "memory-store-relation-flush");
+            flusher.setDaemon(true);
+            flusher.start();
+        } else {
+            syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "memory-store-relation-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(this::syncQuietly, fsyncIntervalMs, fsyncIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+        return baseRecords + recordsSinceBase;
+    }
+
+    /**
+     * Пишет запись в отображённый сегмент и возвращает её номер для {@link #awaitDurable}.
+     */
+    long append(int operation, long first, long second) {
+        lock.lock();
+        try {
+            if (closed || failure != null) {
+                throw new IllegalStateException("Журнал связей закрыт", failure);
+            }
+            if (position + RECORD_BYTES > segmentBytes) {
+                closeSegment();
+                open(segment + 1);
+            }
+            buffer.putInt(position + Integer.BYTES, checksum(operation, first, second))
+                    .putLong(position + Integer.BYTES * 2, first)
+                    .putLong(position + Integer.BYTES * 2 + Long.BYTES, second)
+                    .putInt(position, operation);
+            position += RECORD_BYTES;
+            recordsSinceBase++;
+            written++;
+            if (flusher != null) {
+                flushRequested.signal();
+            }
+            return written;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ждёт, пока запись с данным номером окажется на диске. Без групповой фиксации возвращается сразу.
+     */
+    void awaitDurable(long ticket) {
+        if (flusher == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (durable < ticket && !closed && failure == null) {
+                flushed.awaitUninterruptibly();
+            }
+            if (durable < ticket) {
+                throw new IllegalStateException("Запись журнала связей не сброшена на диск", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Закрывает текущий сегмент и начинает следующий. Возвращает номер нового сегмента.
+     */
+    long rotate() {
+        lock.lock();
+        try {
+            closeSegment();
+            open(segment + 1);
+            recordsSinceBase = 0;
+            return segment;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Записывает базу — состояние на начало сегмента firstSegment — и удаляет файлы до неё.
+     */
+    void writeBase(long firstSegment, BaseWriter writer) throws IOException {
+        Path target = directory.resolve(baseFile(firstSegment));
+        Path temporary = directory.resolve(baseFile(firstSegment) + ".tmp");
+        long records;
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer chunk = ByteBuffer.allocate(RECORD_BYTES * BASE_BUFFER_RECORDS);
+            long[] count = new long[1];
+            writer.write((operation, first, second) -> {
+                if (!chunk.hasRemaining()) {
+                    drain(out, chunk);
+                }
+                chunk.putInt(operation).putInt(checksum(operation, first, second)).putLong(first).putLong(second);
+                count[0]++;
+            });
+            drain(out, chunk);
+            out.force(true);
+            records = count[0];
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        deleteBefore(firstSegment);
+        lock.lock();
+        try {
+            baseRecords = records;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long recordsSinceBase() {
+        lock.lock();
+        try {
+            return recordsSinceBase;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long baseRecords() {
+        lock.lock();
+        try {
+            return baseRecords;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (syncer != null) {
+            syncer.shutdownNow();
+        }
+        lock.lock();
+        try {
+            if (closed || channel == null) {
+                return;
+            }
+            closeSegment();
+            durable = written;
+            closed = true;
+            flushRequested.signalAll();
+            flushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (flusher != null) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Поток групповой фиксации: force идёт без блокировки, и записи, пришедшие во время сброса,
+     * уйдут следующим одним вызовом. Предыдущие сегменты сбрасываются целиком при переключении.
+     */
+    private void flushLoop() {
+        while (true) {
+            MappedByteBuffer target;
+            int length;
+            long ticket;
+            lock.lock();
+            try {
+                while (durable == written && !closed) {
+                    flushRequested.awaitUninterruptibly();
+                }
+                if (closed) {
+                    return;
+                }
+                target = buffer;
+                length = position;
+                ticket = written;
+            } finally {
+                lock.unlock();
+            }
+            RuntimeException error = null;
+            try {
+                target.force(0, length);
+            } catch (RuntimeException e) {
+                log.error("Не удалось сбросить журнал связей", e);
+                error = e;
+            }
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durable = Math.max(durable, ticket);
+                }
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (error != null) {
+                return;
+            }
+        }
+    }
+
+    private void syncQuietly() {
+        MappedByteBuffer target;
+        int length;
+        lock.lock();
+        try {
+            if (closed || durable == written) {
+                return;
+            }
+            target = buffer;
+            length = position;
+            durable = written;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            target.force(0, length);
+        } catch (RuntimeException e) {
+            log.error("Ошибка фонового сброса журнала связей", e);
+        }
+    }
+
+    /**
+     * Читает записи файла до первой нулевой. Повреждённая запись в последнем сегменте — след падения
+     * посреди записи: файл обрезается по ней. В остальных случаях повреждение считается ошибкой.
+     */
+    private static long replay(Path file, boolean last, RecordHandler handler) throws IOException {
+        long records = 0;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = in.size() - in.size() % RECORD_BYTES;
+            MappedByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            for (int offset = 0; offset < size; offset += RECORD_BYTES) {
+                int operation = data.getInt(offset);
+                if (operation == 0) {
+                    break;
+                }
+                int crc = data.getInt(offset + Integer.BYTES);
+                long first = data.getLong(offset + Integer.BYTES * 2);
+                long second = data.getLong(offset + Integer.BYTES * 2 + Long.BYTES);
+                if (crc != checksum(operation, first, second)) {
+                    if (!last) {
+                        throw new IOException("Повреждена запись журнала " + file + " на позиции " + offset);
+                    }
+                    log.warn("Журнал {} обрывается на позиции {}, хвост отброшен", file, offset);
+                    in.truncate(offset);
+                    in.force(true);
+                    break;
+                }
+                handler.accept(operation, first, second);
+                records++;
+            }
+        }
+        return records;
+    }
+
+    private static int checksum(int operation, long first, long second) {
+        CRC32C crc = new CRC32C();
+        crc.update(ByteBuffer.allocate(Integer.BYTES + Long.BYTES * 2)
+                .putInt(operation)
+                .putLong(first)
+                .putLong(second)
+                .flip());
+        return (int) crc.getValue();
+    }
+
+    private static void drain(FileChannel out, ByteBuffer chunk) throws IOException {
+        chunk.flip();
+        while (chunk.hasRemaining()) {
+            out.write(chunk);
+        }
+        chunk.clear();
+    }
+
+    private void open(long number) {
+        try {
+            channel = FileChannel.open(directory.resolve(segmentFile(number)), StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            segment = number;
+            position = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть журнал " + segmentFile(number), e);
+        }
+    }
+
+    private void closeSegment() {
+        try {
+            buffer.force(0, position);
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось закрыть журнал " + segmentFile(segment), e);
+        }
+    }
+
+    private void deleteBefore(long firstKept) throws IOException {
+        for (long number : list(SEGMENT_NAME)) {
+            if (number < firstKept) {
+                Files.deleteIfExists(directory.resolve(segmentFile(number)));
+            }
+        }
+        for (long number : list(BASE_NAME)) {
+            if (number < firstKept) {
+                Files.deleteIfExists(directory.resolve(baseFile(number)));
+            }
+        }
+    }
+
+    private List<Long> list(Pattern pattern) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = pattern.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    numbers.add(Long.parseLong(matcher.group(1)));
+                }
+            });
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    private static String segmentFile(long segment) {
+        return String.format("rel-%016d.log", segment);
+    }
+
+    private static String baseFile(long segment) {
+        return String.format("rel-base-%016d.log", segment);
+    }
+
+    @FunctionalInterface
+    interface RecordHandler {
+        void accept(int operation, long first, long second) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface BaseWriter {
+        void write(RecordHandler sink) throws IOException;
+    }
+}
@@ -0,0 +1,243 @@
+package ru.yandex.practicum.filmorate.storage.inmemory;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Отображение long → V на открытой адресации без упаковки ключей, разбитое на полосы со своими блокировками.
+ * Чтение сначала идёт оптимистично, без захвата блокировки, и повторяется под ней, только если полосу
+ * в это время меняли. Ключ 0 зарезервирован под пустую ячейку: идентификаторы сущностей начинаются с 1.
+ */
+final class StripedLongMap<V> {
+    private static final long FREE = 0;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+
+    StripedLongMap(int stripeCount) {
+        if (Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("Число полос должно быть степенью двойки: " + stripeCount);
+        }
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+        stripeShift = Long.SIZE - Integer.numberOfTrailingZeros(stripeCount);
+    }
+
+    V get(long key) {
+        long hash = hash(key);
+        Stripe stripe = stripe(hash);
+        long stamp = stripe.lock.tryOptimisticRead();
+        if (stamp != 0) {
+            Object value = stripe.table.find(key, hash);
+            if (stripe.lock.validate(stamp)) {
+                return cast(value);
+            }
+        }
+        stamp = stripe.lock.readLock();
+        try {
+            return cast(stripe.table.find(key, hash));
+        } finally {
+            stripe.lock.unlockRead(stamp);
+        }
+    }
+
+    boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    V put(long key, V value) {
+        return compute(key, (k, current) -> value);
+    }
+
+    V remove(long key) {
+        return compute(key, (k, current) -> null);
+    }
+
+    /**
+     * Атомарно заменяет значение по ключу результатом функции; null удаляет ключ. Возвращает прежнее значение.
+     */
+    V compute(long key, Remapping<V> remapping) {
+        checkKey(key);
+        long hash = hash(key);
+        Stripe stripe = stripe(hash);
+        long stamp = stripe.lock.writeLock();
+        try {
+            Table table = stripe.table;
+            int slot = table.slotOf(key, hash);
+            V current = slot < 0 ? null : cast(table.values[slot]);
+            V updated = remapping.apply(key, current);
+            if (updated == current) {
+                return current;
+            }
+            if (updated == null) {
+                table.removeAt(slot);
+                stripe.size--;
+            } else if (slot >= 0) {
+                table.values[slot] = updated;
+            } else {
+                if ((stripe.size + 1) * 2 > table.keys.length) {
+                    table = table.resize(table.keys.length * 2);
+                    stripe.table = table;
+                }
+                table.insert(key, hash, updated);
+                stripe.size++;
+            }
+            return current;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                size += stripe.size;
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Обходит пары по полосам. Каждая полоса копируется под блокировкой, а посетитель вызывается уже без неё,
+     * поэтому обход не задерживает запись, но и не даёт согласованного среза всего отображения.
+     */
+    void forEach(Visitor<V> visitor) {
+        for (Stripe stripe : stripes) {
+            long[] keys;
+            Object[] values;
+            long stamp = stripe.lock.readLock();
+            try {
+                keys = stripe.table.keys.clone();
+                values = stripe.table.values.clone();
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != FREE) {
+                    visitor.visit(keys[i], cast(values[i]));
+                }
+            }
+        }
+    }
+
+    private Stripe stripe(long hash) {
+        return stripes[(int) (hash >>> stripeShift)];
+    }
+
+    private static long hash(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    private static void checkKey(long key) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("Ключ 0 не поддерживается");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V cast(Object value) {
+        return (V) value;
+    }
+
+    @FunctionalInterface
+    interface Remapping<V> {
+        V apply(long key, V current);
+    }
+
+    @FunctionalInterface
+    interface Visitor<V> {
+        void visit(long key, V value);
+    }
+
+    private static final class Stripe {
+        final StampedLock lock = new StampedLock();
+        volatile Table table = new Table(INITIAL_CAPACITY);
+        int size;
+    }
+
+    /**
+     * Таблица с линейным пробированием и удалением сдвигом назад, без надгробий. Заполнена не более чем
+     * наполовину, поэтому поиск всегда упирается в пустую ячейку; при оптимистичном чтении по изменяемой
+     * таблице число проб дополнительно ограничено её размером.
+     */
+    private static final class Table {
+        final long[] keys;
+        final Object[] values;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+            mask = capacity - 1;
+        }
+
+        Object find(long key, long hash) {
+            int slot = (int) hash & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                long current = keys[slot];
+                if (current == key) {
+                    return values[slot];
+                }
+                if (current == FREE) {
+                    return null;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        int slotOf(long key, long hash) {
+            int slot = (int) hash & mask;
+            while (keys[slot] != FREE) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        void insert(long key, long hash, Object value) {
+            int slot = (int) hash & mask;
+            while (keys[slot] != FREE) {
+                slot = (slot + 1) & mask;
+            }
+            values[slot] = value;
+            keys[slot] = key;
+        }
+
+        void removeAt(int slot) {
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (keys[next] != FREE) {
+                int home = (int) hash(keys[next]) & mask;
+                // Элемент можно сдвинуть в дыру, если она лежит между его исходной ячейкой и текущей
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    values[hole] = values[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[hole] = FREE;
+            values[hole] = null;
+        }
+
+        Table resize(int capacity) {
+            Table resized = new Table(capacity);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != FREE) {
+                    resized.insert(keys[i], hash(keys[i]), values[i]);
+                }
+            }
+            return resized;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package ru.yandex.practicum.filmorate.storage.inmemory;
+
+import java.time.LocalDate;
+
+/**
+ * Неизменяемая строка пользователя.
+ */
+record UserRecord(long id, String email, String login, String name, LocalDate birthday, long version) {
+}
@@ -0,0 +1,235 @@
+package ru.yandex.practicum.filmorate.storage.inmemory;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал упреждающей записи в сегментах wal-<номер>.log. Запись — [длина][CRC32][тело].
+ * При fsyncIntervalMs = 0 каждая запись сбрасывается на диск до возврата, иначе фоновый поток
+ * сбрасывает накопленное раз в интервал: при падении процесса данные уже у ОС, при отказе
+ * питания теряется не больше интервала.
+ */
+@Slf4j
+final class WriteAheadLog implements Closeable {
+    private static final Pattern SEGMENT_NAME = Pattern.compile("wal-(\\d+)\\.log");
+    private static final int HEADER_BYTES = Integer.BYTES * 2;
+
+    private final Path directory;
+    private final boolean syncEachWrite;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ScheduledExecutorService syncer;
+    private FileChannel channel;
+    private long segment;
+    private boolean dirty;
+
+    WriteAheadLog(Path directory, long segment, long fsyncIntervalMs) {
+        this.directory = directory;
+        this.syncEachWrite = fsyncIntervalMs <= 0;
+        open(segment);
+        if (syncEachWrite) {
+            syncer = null;
+        } else {
+            syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "memory-store-wal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(this::syncQuietly, fsyncIntervalMs, fsyncIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void append(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payload.length)
+                .putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(payload)
+                .flip();
+        lock.lock();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (syncEachWrite) {
+                channel.force(false);
+            } else {
+                dirty = true;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать в журнал " + segmentFile(segment), e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Закрывает текущий сегмент и начинает следующий. Возвращает номер нового сегмента.
+     */
+    long rotate() {
+        lock.lock();
+        try {
+            closeChannel();
+            open(segment + 1);
+            return segment;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void sync() {
+        lock.lock();
+        try {
+            if (dirty) {
+                channel.force(false);
+                dirty = false;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось сбросить журнал " + segmentFile(segment), e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Удаляет сегменты, целиком вошедшие в снимок.
+     */
+    void deleteSegmentsBefore(long firstKept) throws IOException {
+        for (long number : segments(directory)) {
+            if (number < firstKept) {
+                Files.deleteIfExists(directory.resolve(segmentFile(number)));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (syncer != null) {
+            syncer.shutdownNow();
+        }
+        lock.lock();
+        try {
+            closeChannel();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Номера сегментов в каталоге по возрастанию.
+     */
+    static List<Long> segments(Path directory) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    numbers.add(Long.parseLong(matcher.group(1)));
+                }
+            });
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    /**
+     * Читает записи сегмента по порядку. Оборванная или повреждённая запись в конце последнего сегмента —
+     * след падения посреди записи: хвост отрезается. В остальных случаях повреждение считается ошибкой.
+     * Возвращает число прочитанных записей.
+     */
+    static long replay(Path directory, long segment, boolean last, RecordHandler handler) throws IOException {
+        Path file = directory.resolve(segmentFile(segment));
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+        long records = 0;
+        while (data.hasRemaining()) {
+            int start = data.position();
+            byte[] payload = readRecord(data);
+            if (payload == null) {
+                if (!last) {
+                    throw new IOException("Повреждена запись журнала " + file + " на позиции " + start);
+                }
+                log.warn("Журнал {} обрывается на позиции {}, хвост отброшен", file, start);
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(start);
+                    channel.force(true);
+                }
+                break;
+            }
+            handler.accept(payload);
+            records++;
+        }
+        return records;
+    }
+
+    private static byte[] readRecord(ByteBuffer data) {
+        if (data.remaining() < HEADER_BYTES) {
+            return null;
+        }
+        int length = data.getInt();
+        int checksum = data.getInt();
+        if (length < 0 || length > data.remaining()) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        data.get(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue() == checksum ? payload : null;
+    }
+
+    static String segmentFile(long segment) {
+        return String.format("wal-%016d.log", segment);
+    }
+
+    private void open(long number) {
+        try {
+            channel = FileChannel.open(directory.resolve(segmentFile(number)), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            segment = number;
+            dirty = false;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть журнал " + segmentFile(number), e);
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось закрыть журнал " + segmentFile(segment), e);
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (RuntimeException e) {
+            log.error("Ошибка фонового сброса журнала", e);
+        }
+    }
+
+    @FunctionalInterface
+    interface RecordHandler {
+        void accept(byte[] payload) throws IOException;
+    }
+}
@@ -0,0 +1,3 @@
+create index if not exists user_friends_friend_idx on user_friends(friend_id, user_id);
+create index if not exists likes_film_idx on likes(film_id, user_id);
+create index if not exists genres_film_genre_idx on genres_film(genre_id, film_id);
@@ -0,0 +1,2 @@
+alter table film add column if not exists version bigint NOT NULL DEFAULT 0;
+alter table users add column if not exists version bigint NOT NULL DEFAULT 0;
@@ -0,0 +1,17 @@
+-- В исходной схеме у genres_film не было первичного ключа, и в ней могли накопиться дубли.
+-- Таблица пересоздаётся с ключом и без дублей: так миграция подходит и для базы, где ключ уже есть.
+create table genres_film_new(
+PRIMARY KEY(film_id, genre_id),
+film_id int,
+genre_id int,
+FOREIGN KEY(film_id) REFERENCES film(id),
+FOREIGN KEY(genre_id) REFERENCES genre(genre_id)
+);
+
+insert into genres_film_new(film_id, genre_id)
+select distinct film_id, genre_id from genres_film
+where film_id is not null and genre_id is not null;
+
+drop table genres_film;
+alter table genres_film_new rename to genres_film;
+create index if not exists genres_film_genre_idx on genres_film(genre_id, film_id);
@@ -0,0 +1,134 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Ratings;
+import ru.yandex.practicum.filmorate.service.CompositeFilmLoader;
+import ru.yandex.practicum.filmorate.storage.inmemory.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.inmemory.InMemoryGenreStorage;
+import ru.yandex.practicum.filmorate.storage.inmemory.MemoryStore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompositeFilmLoaderTests {
+
+    @TempDir
+    private Path directory;
+
+    private MemoryStore store;
+
+    private ExecutorService executor;
+
+    private final List<Long> filmIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = new MemoryStore(directory, 0, 0, 1 << 20, 0);
+        store.open();
+        executor = Executors.newFixedThreadPool(4);
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(store);
+        InMemoryGenreStorage genreStorage = new InMemoryGenreStorage(store);
+        for (int i = 0; i < 10; i++) {
+            long filmId = filmStorage.createFilm(film("Film " + i)).getId();
+            genreStorage.replaceFilmGenres(filmId, List.of(i % 6 + 1));
+            filmIds.add(filmId);
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        executor.shutdownNow();
+        store.close();
+    }
+
+    @Test
+    void shouldKeepRequestedOrderWhenChunksCompleteOutOfOrder() {
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(store) {
+            @Override
+            public List<Film> getFilmsByIds(List<Long> ids) {
+                // Первые порции отвечают последними
+                sleep((10 - filmIds.indexOf(ids.get(0))) * 10L);
+                return super.getFilmsByIds(ids);
+            }
+        };
+        CompositeFilmLoader loader = new CompositeFilmLoader(filmStorage, new InMemoryGenreStorage(store), executor,
+                2, 5);
+        List<Long> requested = new ArrayList<>(filmIds);
+        requested.add(0, requested.remove(7));
+
+        List<Film> films = loader.loadFilms(requested);
+
+        assertThat(films).extracting(Film::getId).containsExactlyElementsOf(requested);
+        assertThat(films).allSatisfy(film -> assertThat(film.getGenres()).extracting(Genre::getId)
+                .containsExactly(filmIds.indexOf(film.getId()) % 6 + 1));
+    }
+
+    @Test
+    void shouldCancelRemainingChunksAfterFirstFailure() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(store) {
+            @Override
+            public List<Film> getFilmsByIds(List<Long> ids) {
+                started.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return List.of();
+            }
+        };
+        InMemoryGenreStorage genreStorage = new InMemoryGenreStorage(store) {
+            @Override
+            public Map<Long, List<Genre>> getGenresForFilms(List<Long> ids) {
+                try {
+                    started.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("Жанры недоступны");
+            }
+        };
+        CompositeFilmLoader loader = new CompositeFilmLoader(filmStorage, genreStorage, executor, 5, 2);
+
+        assertThatThrownBy(() -> loader.loadFilms(filmIds))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Жанры недоступны");
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Film film(String name) {
+        return Film.builder()
+                .name(name)
+                .description("Description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Ratings(1, null))
+                .build();
+    }
+}
@@ -0,0 +1,136 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Ratings;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "filmorate.search.snapshot-path=")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+class ConditionalGetTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void shouldServeFilmWithETagAndChangeItAfterUpdate() throws Exception {
+        Film film = filmService.createFilm(film("Before"));
+        String url = "/films/" + film.getId();
+        String etag = assertCachedUntilChanged(url);
+
+        film.setName("After");
+        mockMvc.perform(put("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(film)))
+                .andExpect(status().isOk());
+
+        String updated = getWithETag(url, etag);
+        assertThat(updated).isNotEqualTo(etag);
+        mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, updated))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void shouldServeUserWithETagAndChangeItAfterUpdate() throws Exception {
+        User user = userService.createUser(user("alice"));
+        String url = "/users/" + user.getId();
+        String etag = assertCachedUntilChanged(url);
+
+        user.setName("Alice Cooper");
+        mockMvc.perform(put("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(user)))
+                .andExpect(status().isOk());
+
+        String updated = getWithETag(url, etag);
+        assertThat(updated).isNotEqualTo(etag);
+        mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, updated))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void shouldServeGenresAndMpaWithSharedReferenceETag() throws Exception {
+        String genres = assertCachedUntilChanged("/genres");
+        mockMvc.perform(get("/genres/1").header(HttpHeaders.IF_NONE_MATCH, genres))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/genres/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Комедия"));
+
+        String mpa = assertCachedUntilChanged("/mpa");
+        assertThat(mpa).isEqualTo(genres);
+        mockMvc.perform(get("/mpa/1").header(HttpHeaders.IF_NONE_MATCH, mpa))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/mpa/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("G"));
+    }
+
+    /**
+     * Первый запрос отдаёт тело и ETag, повтор с If-None-Match — 304 без тела. Возвращает ETag.
+     */
+    private String assertCachedUntilChanged(String url) throws Exception {
+        String etag = mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isNotBlank().startsWith("\"");
+        mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        return etag;
+    }
+
+    private String getWithETag(String url, String staleETag) throws Exception {
+        return mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, staleETag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    private Film film(String name) {
+        return Film.builder()
+                .name(name)
+                .description("Description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Ratings(1, null))
+                .build();
+    }
+
+    private User user(String login) {
+        return User.builder()
+                .email(login + "@example.com")
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
@@ -0,0 +1,166 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Ratings;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Гонки изменений связей с удалением участников: каждая операция либо проходит, либо получает 404,
+ * а в таблицах и индексе лайков не остаётся связей с удалёнными фильмами и пользователями.
+ */
+@SpringBootTest(properties = "filmorate.search.snapshot-path=")
+@AutoConfigureTestDatabase
+class EntityLocksTests {
+    private static final int ROUNDS = 50;
+    private static final int THREADS = 8;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private FilmDbStorage filmStorage;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldLikeOrAnswerNotFoundWhileFilmIsDeleted() throws Exception {
+        long userId = userService.createUser(user("fan")).getId();
+        for (int i = 0; i < ROUNDS; i++) {
+            long filmId = filmService.createFilm(film()).getId();
+            race(() -> filmService.addLike(filmId, userId), () -> {
+                filmService.deleteFilm(filmId);
+                return null;
+            });
+        }
+
+        assertThat(count("SELECT COUNT(*) FROM likes l WHERE NOT EXISTS (SELECT 1 FROM film f WHERE f.id = l.film_id)"))
+                .isZero();
+        assertThat(filmStorage.checkLikesIndexConsistency()).isTrue();
+    }
+
+    @Test
+    void shouldAddFriendOrAnswerNotFoundWhileUserIsDeleted() throws Exception {
+        long userId = userService.createUser(user("host")).getId();
+        for (int i = 0; i < ROUNDS; i++) {
+            long friendId = userService.createUser(user("guest" + i)).getId();
+            race(() -> userService.addFriend(userId, friendId), () -> {
+                userService.deleteUser(friendId);
+                return null;
+            });
+        }
+
+        assertThat(count("SELECT COUNT(*) FROM user_friends uf " +
+                "WHERE NOT EXISTS (SELECT 1 FROM users u WHERE u.id = uf.friend_id)")).isZero();
+        assertThat(userService.getFriends(userId)).isEmpty();
+    }
+
+    @Test
+    void shouldCountConcurrentDuplicateLikeOnce() throws Exception {
+        long filmId = filmService.createFilm(film()).getId();
+        long userId = userService.createUser(user("twin")).getId();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return filmService.addLike(filmId, userId);
+            }));
+        }
+        start.countDown();
+
+        int added = 0;
+        for (Future<Boolean> result : results) {
+            added += result.get(10, TimeUnit.SECONDS) ? 1 : 0;
+        }
+        assertThat(added).isEqualTo(1);
+        assertThat(count("SELECT COUNT(*) FROM likes WHERE film_id = " + filmId)).isEqualTo(1);
+        assertThat(filmStorage.getLikeCounts(List.of(filmId))).containsEntry(filmId, 1);
+        assertThat(filmStorage.checkLikesIndexConsistency()).isTrue();
+    }
+
+    /**
+     * Запускает изменение связи и удаление одновременно. Изменение может только пройти или получить
+     * NotFoundException, удаление должно пройти всегда.
+     */
+    private void race(Callable<?> mutation, Callable<?> deletion) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        Future<?> mutated = executor.submit(() -> {
+            start.await();
+            return mutation.call();
+        });
+        Future<?> deleted = executor.submit(() -> {
+            start.await();
+            return deletion.call();
+        });
+        start.countDown();
+        deleted.get(10, TimeUnit.SECONDS);
+        try {
+            mutated.get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(NotFoundException.class);
+        }
+    }
+
+    private int count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Integer.class);
+    }
+
+    private Film film() {
+        return Film.builder()
+                .name("Film")
+                .description("Description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Ratings(1, null))
+                .build();
+    }
+
+    private User user(String login) {
+        return User.builder()
+                .email(login + "@example.com")
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
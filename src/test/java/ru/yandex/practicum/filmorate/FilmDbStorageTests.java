@@ -0,0 +1,266 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.UserDbStorage;
+import ru.yandex.practicum.filmorate.index.FilmRecommendationIndex;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.Ratings;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmDbStorage.class, UserDbStorage.class, GenreDbStorage.class})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+// Индекс лайков обновляется после фиксации, поэтому тесты идут без общей транзакции с откатом
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FilmDbStorageTests {
+
+    @Autowired
+    private FilmDbStorage filmStorage;
+
+    @Autowired
+    private UserStorage userStorage;
+
+    @Autowired
+    private GenreDbStorage genreStorage;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void shouldLeaveLikesIndexUntouchedWhenTransactionRollsBack() {
+        Film kept = filmStorage.createFilm(film("Kept"));
+        User alice = userStorage.createUser(user("alice"));
+        User bob = userStorage.createUser(user("bob"));
+        filmStorage.addLike(kept.getId(), alice.getId());
+
+        long phantomId = transactionTemplate.execute(status -> {
+            Film phantom = filmStorage.createFilm(film("Phantom"));
+            filmStorage.addLike(phantom.getId(), bob.getId());
+            filmStorage.addLikes(List.of(new Like(kept.getId(), bob.getId())));
+            filmStorage.removeUserLikes(alice.getId());
+            status.setRollbackOnly();
+            return phantom.getId();
+        });
+
+        assertThat(filmStorage.getPopularFilms(10)).extracting(Film::getId).containsExactly(kept.getId());
+        assertThat(filmStorage.getLikeCounts(List.of(kept.getId(), phantomId)))
+                .containsEntry(kept.getId(), 1)
+                .containsEntry(phantomId, 0);
+        assertThat(filmStorage.checkLikesIndexConsistency()).isTrue();
+    }
+
+    @Test
+    void shouldReturnPopularFilmsOrderedByLikes() {
+        Film first = filmStorage.createFilm(film("First"));
+        Film second = filmStorage.createFilm(film("Second"));
+        Film third = filmStorage.createFilm(film("Third"));
+        User alice = userStorage.createUser(user("alice"));
+        User bob = userStorage.createUser(user("bob"));
+
+        filmStorage.addLike(second.getId(), alice.getId());
+        filmStorage.addLike(second.getId(), bob.getId());
+        filmStorage.addLike(third.getId(), alice.getId());
+        filmStorage.addLike(first.getId(), bob.getId());
+        filmStorage.removeLike(first.getId(), bob.getId());
+
+        List<Film> popular = filmStorage.getPopularFilms(2);
+
+        assertThat(popular).extracting(Film::getId).containsExactly(second.getId(), third.getId());
+        assertThat(popular.get(0).getMpa().getName()).isEqualTo("G");
+        assertThat(filmStorage.checkLikesIndexConsistency()).isTrue();
+    }
+
+    @Test
+    void shouldRebuildIndexWhenLikesChangedOutsideStorage() {
+        Film first = filmStorage.createFilm(film("First"));
+        Film second = filmStorage.createFilm(film("Second"));
+        User alice = userStorage.createUser(user("alice"));
+        filmStorage.addLike(first.getId(), alice.getId());
+
+        jdbcTemplate.update("DELETE FROM likes");
+        jdbcTemplate.update("INSERT INTO likes (film_id, user_id) VALUES (?, ?)", second.getId(), alice.getId());
+
+        assertThat(filmStorage.checkLikesIndexConsistency()).isFalse();
+        assertThat(filmStorage.checkLikesIndexConsistency()).isTrue();
+        assertThat(filmStorage.getPopularFilms(1)).extracting(Film::getId).containsExactly(second.getId());
+    }
+
+    @Test
+    void shouldBumpVersionOnUpdate() {
+        Film film = filmStorage.createFilm(film("First"));
+        assertThat(filmStorage.getFilmVersion(film.getId())).contains(0L);
+
+        film.setName("Second");
+        assertThat(filmStorage.updateFilm(film).getVersion()).isEqualTo(1L);
+        assertThat(filmStorage.getFilmById(film.getId())).get().extracting(Film::getVersion).isEqualTo(1L);
+        assertThat(filmStorage.getFilmVersion(film.getId() + 1)).isEmpty();
+    }
+
+    @Test
+    void shouldFilterPopularFilmsByGenreAndYear() {
+        Film comedy = film("Comedy");
+        comedy.setGenres(List.of(new Genre(1, null)));
+        Film drama = film("Drama");
+        drama.setGenres(List.of(new Genre(1, null), new Genre(2, null)));
+        comedy = filmStorage.createFilm(comedy);
+        drama = filmStorage.createFilm(drama);
+        Film plain = filmStorage.createFilm(film("Plain"));
+        User alice = userStorage.createUser(user("alice"));
+        User bob = userStorage.createUser(user("bob"));
+        filmStorage.addLike(drama.getId(), alice.getId());
+        filmStorage.addLike(drama.getId(), bob.getId());
+        filmStorage.addLike(comedy.getId(), alice.getId());
+        filmStorage.addLike(plain.getId(), alice.getId());
+
+        assertThat(filmStorage.getPopularFilms(10, 1, null)).extracting(Film::getId)
+                .containsExactly(drama.getId(), comedy.getId());
+        assertThat(filmStorage.getPopularFilms(10, 2, 2000)).extracting(Film::getId)
+                .containsExactly(drama.getId());
+
+        drama.setReleaseDate(LocalDate.of(2010, 5, 1));
+        filmStorage.updateFilm(drama);
+        assertThat(filmStorage.getPopularFilms(10, 1, 2000)).extracting(Film::getId)
+                .containsExactly(comedy.getId());
+        assertThat(filmStorage.getPopularFilms(10, null, 2010)).extracting(Film::getId)
+                .containsExactly(drama.getId());
+    }
+
+    @Test
+    void shouldResolveGenresMissingFromCacheAfterScan() {
+        Film drama = film("Drama");
+        drama.setGenres(List.of(new Genre(2, null)));
+        drama = filmStorage.createFilm(drama);
+        jdbcTemplate.update("INSERT INTO genres_film (film_id, genre_id) VALUES (?, 2)", drama.getId());
+        jdbcTemplate.update("INSERT INTO genre (genre_id, name) VALUES (1000, 'Нуар'), (7, 'Вестерн')");
+        jdbcTemplate.update("INSERT INTO genres_film (film_id, genre_id) VALUES (?, 1000), (?, 7)",
+                drama.getId(), drama.getId());
+
+        assertThat(genreStorage.getGenresForFilms(List.of(drama.getId())).get(drama.getId()))
+                .extracting(Genre::getName).containsExactly("Драма", "Вестерн", "Нуар");
+    }
+
+    @Test
+    void shouldImportFilmsAndLikesInBatches() {
+        Film drama = film("Drama");
+        drama.setGenres(List.of(new Genre(2, null)));
+        List<Film> films = filmStorage.createFilms(List.of(film("Plain"), drama));
+        List<User> users = userStorage.createUsers(List.of(user("alice"), user("bob")));
+
+        assertThat(films).extracting(Film::getId).doesNotContain(0L).doesNotHaveDuplicates();
+        assertThat(users).extracting(User::getId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(filmStorage.getFilmById(drama.getId())).get()
+                .extracting(film -> film.getGenres().get(0).getName()).isEqualTo("Драма");
+
+        Like aliceLikesDrama = new Like(drama.getId(), users.get(0).getId());
+        List<Like> added = filmStorage.addLikes(List.of(aliceLikesDrama,
+                new Like(drama.getId(), users.get(1).getId()), aliceLikesDrama));
+
+        assertThat(added).hasSize(2);
+        assertThat(filmStorage.getPopularFilms(10, 2, null)).extracting(Film::getId).containsExactly(drama.getId());
+        assertThat(filmStorage.checkLikesIndexConsistency()).isTrue();
+    }
+
+    @Test
+    void shouldRecommendFilmsLikedByUsersWithCommonTaste() {
+        Film first = filmStorage.createFilm(film("First"));
+        Film second = filmStorage.createFilm(film("Second"));
+        Film third = filmStorage.createFilm(film("Third"));
+        Film fourth = filmStorage.createFilm(film("Fourth"));
+        User alice = userStorage.createUser(user("alice"));
+        User bob = userStorage.createUser(user("bob"));
+        User carol = userStorage.createUser(user("carol"));
+        filmStorage.addLike(first.getId(), alice.getId());
+        filmStorage.addLike(first.getId(), bob.getId());
+        filmStorage.addLike(second.getId(), bob.getId());
+        filmStorage.addLike(first.getId(), carol.getId());
+        filmStorage.addLike(second.getId(), carol.getId());
+        filmStorage.addLike(third.getId(), carol.getId());
+
+        FilmRecommendationIndex index = new FilmRecommendationIndex(filmStorage, 60);
+        index.rebuild();
+        assertThat(index.recommend(alice.getId(), 10)).containsExactly(second.getId(), third.getId());
+
+        index.onLike(fourth.getId(), bob.getId());
+        index.onLike(fourth.getId(), carol.getId());
+        index.onUnlike(third.getId(), carol.getId());
+        assertThat(index.recommend(alice.getId(), 10)).containsExactly(second.getId(), fourth.getId());
+    }
+
+    @Test
+    void shouldSearchByPrefixAndRestoreIndexFromSnapshot(@TempDir Path directory) {
+        Film hedgehog = film("Ёжик в тумане");
+        hedgehog.setDescription("Мультфильм о ёжике");
+        hedgehog = filmStorage.createFilm(hedgehog);
+        Film fog = film("Туман");
+        fog.setDescription("Ёжики здесь не живут");
+        fog = filmStorage.createFilm(fog);
+        Path snapshot = directory.resolve("search.idx");
+        FilmSearchIndex index = new FilmSearchIndex(filmStorage, snapshot.toString(), 0);
+        index.init();
+
+        assertThat(index.search("ежик", EnumSet.allOf(FilmSearchIndex.Field.class)))
+                .containsOnlyKeys(hedgehog.getId(), fog.getId());
+        assertThat(index.search("ЕЖ ТУМ", EnumSet.of(FilmSearchIndex.Field.TITLE)))
+                .containsOnlyKeys(hedgehog.getId());
+
+        index.saveSnapshot();
+        FilmSearchIndex restored = new FilmSearchIndex(filmStorage, snapshot.toString(), 0);
+        restored.init();
+        assertThat(restored.search("мульт", EnumSet.allOf(FilmSearchIndex.Field.class)))
+                .containsOnlyKeys(hedgehog.getId());
+
+        restored.saveSnapshot();
+        fog.setDescription("Ёжики здесь не плыли");
+        filmStorage.updateFilm(fog);
+        FilmSearchIndex rebuilt = new FilmSearchIndex(filmStorage, snapshot.toString(), 0);
+        rebuilt.init();
+        assertThat(rebuilt.search("плыл", EnumSet.allOf(FilmSearchIndex.Field.class)))
+                .containsOnlyKeys(fog.getId());
+    }
+
+    private Film film(String name) {
+        return Film.builder()
+                .name(name)
+                .description("Description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Ratings(1, null))
+                .build();
+    }
+
+    private User user(String login) {
+        return User.builder()
+                .email(login + "@example.com")
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
@@ -0,0 +1,147 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.dao.UserDbStorage;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import(UserDbStorage.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class FriendSuggestionsTests {
+
+    @Autowired
+    private UserStorage sqlStorage;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private UserDbStorage graphStorage;
+
+    private final List<Long> userIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 40; i++) {
+            userIds.add(sqlStorage.createUser(User.builder()
+                    .email("user" + i + "@example.com")
+                    .login("user" + i)
+                    .name("user" + i)
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build()).getId());
+        }
+        graphStorage = new UserDbStorage(jdbcTemplate, Optional.of(new FriendGraph()));
+    }
+
+    @Test
+    void shouldChangeGraphOnlyAfterCommit() {
+        long me = userIds.get(0);
+        // Тест идёт в транзакции, которая откатывается: незафиксированная дружба не должна попасть в граф
+        graphStorage.addFriend(me, userIds.get(1));
+
+        assertThat(sqlStorage.getFriends(me)).extracting(User::getId).containsExactly(userIds.get(1));
+        assertThat(graphStorage.getFriends(me)).isEmpty();
+    }
+
+    @Test
+    void shouldRankSecondDegreeContactsByMutualFriends() {
+        long me = userIds.get(0);
+        long a = userIds.get(1);
+        long b = userIds.get(2);
+        long c = userIds.get(3);
+        long d = userIds.get(4);
+        sqlStorage.addFriend(me, a);
+        sqlStorage.addFriend(me, b);
+        sqlStorage.addFriend(a, c);
+        sqlStorage.addFriend(b, c);
+        sqlStorage.addFriend(a, d);
+        sqlStorage.addFriend(a, me);
+        sqlStorage.addFriend(a, b);
+        graphStorage.rebuildFriendGraph();
+
+        assertThat(sqlStorage.getFriendSuggestions(me, 10)).extracting(User::getId).containsExactly(c, d);
+        assertThat(graphStorage.getFriendSuggestions(me, 10)).extracting(User::getId).containsExactly(c, d);
+        assertThat(graphStorage.getFriendSuggestions(me, 1)).extracting(User::getId).containsExactly(c);
+    }
+
+    @Test
+    void shouldMatchSqlRankingOnRandomGraph() {
+        Random random = new Random(7);
+        for (long userId : userIds) {
+            for (int i = 0; i < 6; i++) {
+                long friendId = userIds.get(random.nextInt(userIds.size()));
+                if (friendId != userId) {
+                    sqlStorage.addFriend(userId, friendId);
+                }
+            }
+        }
+        graphStorage.rebuildFriendGraph();
+
+        for (long userId : userIds) {
+            assertThat(graphStorage.getFriendSuggestions(userId, 5)).extracting(User::getId)
+                    .isEqualTo(sqlStorage.getFriendSuggestions(userId, 5).stream().map(User::getId).toList());
+        }
+    }
+
+    @Test
+    void shouldMatchSqlRankingForHighDegreeUser() {
+        long me = userIds.get(0);
+        Random random = new Random(11);
+        List<Long> hubFriends = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            long friendId = sqlStorage.createUser(User.builder()
+                    .email("hub" + i + "@example.com")
+                    .login("hub" + i)
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build()).getId();
+            hubFriends.add(friendId);
+            sqlStorage.addFriend(me, friendId);
+        }
+        for (long friendId : hubFriends) {
+            for (int i = 0; i < 3; i++) {
+                sqlStorage.addFriend(friendId, userIds.get(1 + random.nextInt(userIds.size() - 1)));
+            }
+        }
+        graphStorage.rebuildFriendGraph();
+
+        assertThat(graphStorage.getFriendSuggestions(me, 10)).extracting(User::getId)
+                .isEqualTo(sqlStorage.getFriendSuggestions(me, 10).stream().map(User::getId).toList());
+    }
+
+    @Test
+    void shouldRemoveDeletedUserFromEveryFriendList() {
+        FriendGraph graph = new FriendGraph();
+        graph.addEdge(1, 2);
+        graph.addEdge(3, 2);
+        graph.addEdge(2, 4);
+        graph.setFriends(5, new long[]{2, 4});
+        graph.setFriends(5, new long[]{4});
+
+        graph.removeUser(2);
+        graph.removeUser(4);
+
+        assertThat(graph.getFriends(1)).isEmpty();
+        assertThat(graph.getFriends(2)).isEmpty();
+        assertThat(graph.getFriends(3)).isEmpty();
+        assertThat(graph.getFriends(5)).isEmpty();
+        assertThat(graph.addEdge(1, 2)).isTrue();
+        assertThat(graph.getFriends(1)).containsExactly(2L);
+    }
+}
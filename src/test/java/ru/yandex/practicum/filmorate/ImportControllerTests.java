@@ -0,0 +1,148 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Ratings;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "filmorate.import.batch-size=2",
+        "filmorate.search.snapshot-path="
+})
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class ImportControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private FilmService filmService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private FilmStorage filmStorage;
+
+    @Test
+    void shouldParseQuotedCsvWithCrlfAndReportBrokenRecords() throws Exception {
+        String csv = "name,description,releaseDate,duration,mpa,genres\r\n" +
+                "Plain,Simple,2000-01-01,100,1,1|2\r\n" +
+                "\"Quoted, name\",\"He said \"\"hi\"\"\r\nand left\",2001-02-03,90,2,\r\n" +
+                "Short,row\r\n" +
+                "Broken,\"never closed,2000-01-01,100,1,\r\n";
+
+        List<JsonNode> events = importData("films", "text/csv", csv);
+
+        assertThat(events(events, "error")).extracting(event -> event.get("line").asLong())
+                .containsExactly(5L, 6L);
+        assertThat(events(events, "error").get(0).get("message").asText())
+                .isEqualTo("Ожидалось полей: 6, получено: 2");
+        assertThat(events(events, "error").get(1).get("message").asText()).startsWith("Незакрытая кавычка");
+        assertThat(events(events, "progress")).hasSize(1);
+        assertSummary(events, 4, 2, 0, 2);
+
+        List<Film> films = new ArrayList<>(filmService.getAllFilms());
+        assertThat(films).extracting(Film::getName).containsExactly("Plain", "Quoted, name");
+        assertThat(films.get(0).getGenres()).extracting(Genre::getId).containsExactly(1, 2);
+        assertThat(films.get(1).getDescription()).isEqualTo("He said \"hi\"\r\nand left");
+        assertThat(films.get(1).getMpa().getId()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldRetryFailedBatchRowByRowAndCountExistingLikesAsSkipped() throws Exception {
+        long filmId = filmService.createFilm(film()).getId();
+        long alice = userService.createUser(user("alice")).getId();
+        long bob = userService.createUser(user("bob")).getId();
+        String ndjson = like(filmId, alice) + like(filmId, bob) +
+                like(filmId, alice) + like(999, alice) +
+                "{\"filmId\": \n";
+
+        List<JsonNode> events = importData("likes", "application/x-ndjson", ndjson);
+
+        List<JsonNode> errors = events(events, "error");
+        assertThat(errors).extracting(event -> event.get("line").asLong()).containsExactly(4L, 5L);
+        assertThat(errors.get(0).get("message").asText()).isEqualTo("Фильм с ID 999 не найден");
+        assertThat(errors.get(1).get("message").asText()).startsWith("Некорректный JSON");
+        assertThat(events(events, "progress")).extracting(event -> event.get("imported").asLong())
+                .containsExactly(2L, 2L);
+        assertSummary(events, 5, 2, 1, 2);
+        assertThat(filmStorage.getLikeCounts(List.of(filmId))).containsEntry(filmId, 2);
+    }
+
+    private List<JsonNode> importData(String type, String contentType, String body) throws Exception {
+        String response = mockMvc.perform(post("/import/" + type)
+                        .contentType(contentType)
+                        .content(body.getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        List<JsonNode> events = new ArrayList<>();
+        for (String line : response.split("\n")) {
+            events.add(objectMapper.readTree(line));
+        }
+        assertThat(events.get(events.size() - 1).get("event").asText()).isEqualTo("done");
+        return events;
+    }
+
+    private static List<JsonNode> events(List<JsonNode> events, String type) {
+        return events.stream().filter(event -> event.get("event").asText().equals(type)).toList();
+    }
+
+    private static void assertSummary(List<JsonNode> events, long processed, long imported, long skipped,
+                                      long failed) {
+        JsonNode summary = events.get(events.size() - 1);
+        assertThat(summary.get("processed").asLong()).isEqualTo(processed);
+        assertThat(summary.get("imported").asLong()).isEqualTo(imported);
+        assertThat(summary.get("skipped").asLong()).isEqualTo(skipped);
+        assertThat(summary.get("failed").asLong()).isEqualTo(failed);
+    }
+
+    private static String like(long filmId, long userId) {
+        return "{\"filmId\": " + filmId + ", \"userId\": " + userId + "}\n";
+    }
+
+    private Film film() {
+        return Film.builder()
+                .name("Film")
+                .description("Description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Ratings(1, null))
+                .build();
+    }
+
+    private User user(String login) {
+        return User.builder()
+                .email(login + "@example.com")
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
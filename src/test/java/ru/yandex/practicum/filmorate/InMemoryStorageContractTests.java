@@ -0,0 +1,221 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.RatingsStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.inmemory.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.inmemory.InMemoryGenreStorage;
+import ru.yandex.practicum.filmorate.storage.inmemory.InMemoryRatingsStorage;
+import ru.yandex.practicum.filmorate.storage.inmemory.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.inmemory.MemoryStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryStorageContractTests extends StorageContractTests {
+    // Десять записей журнала связей на сегмент, чтобы тесты проходили через переключение сегментов
+    private static final int RELATION_SEGMENT_BYTES = 240;
+
+    @TempDir
+    private Path directory;
+
+    private MemoryStore store;
+
+    @BeforeEach
+    void openStore() throws IOException {
+        store = newStore();
+        store.open();
+    }
+
+    @AfterEach
+    void closeStore() throws IOException {
+        store.close();
+    }
+
+    private MemoryStore newStore() {
+        return new MemoryStore(directory, 0, 0, RELATION_SEGMENT_BYTES, 0);
+    }
+
+    @Override
+    protected FilmStorage filmStorage() {
+        return new InMemoryFilmStorage(store);
+    }
+
+    @Override
+    protected UserStorage userStorage() {
+        return new InMemoryUserStorage(store);
+    }
+
+    @Override
+    protected GenreStorage genreStorage() {
+        return new InMemoryGenreStorage(store);
+    }
+
+    @Override
+    protected RatingsStorage ratingsStorage() {
+        return new InMemoryRatingsStorage(store);
+    }
+
+    @Test
+    void shouldWriteFilmRowAndGenresAsOneVersion() {
+        long id = filmStorage().createFilm(withGenres(film("First"), 2, 1)).getId();
+        assertThat(filmStorage().getFilmById(id).orElseThrow().getGenres()).extracting(Genre::getId)
+                .containsExactly(1, 2);
+
+        Film changed = withGenres(film("Second"), 3);
+        changed.setId(id);
+        filmStorage().updateFilm(changed);
+        Film stored = filmStorage().getFilmById(id).orElseThrow();
+        assertThat(stored.getGenres()).extracting(Genre::getId).containsExactly(3);
+        assertThat(stored.getVersion()).isEqualTo(1L);
+    }
+
+    @Test
+    void shouldRecoverFromSnapshotAndLogAfterCrash() throws IOException {
+        Film kept = filmStorage().createFilm(film("Kept"));
+        Film deleted = filmStorage().createFilm(film("Deleted"));
+        User alice = userStorage().createUser(user("alice"));
+        User bob = userStorage().createUser(user("bob"));
+        filmStorage().addLike(kept.getId(), alice.getId());
+        filmStorage().addLike(deleted.getId(), bob.getId());
+        store.snapshot();
+
+        genreStorage().replaceFilmGenres(kept.getId(), List.of(3));
+        filmStorage().addLike(kept.getId(), bob.getId());
+        filmStorage().deleteFilm(deleted.getId());
+        userStorage().addFriend(alice.getId(), bob.getId());
+        // Падение посреди записи: в журнале остаётся оборванная запись
+        try (Stream<Path> files = Files.list(directory)) {
+            Path lastSegment = files.filter(file -> file.getFileName().toString().startsWith("wal-"))
+                    .max(Path::compareTo)
+                    .orElseThrow();
+            Files.write(lastSegment, new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+        }
+
+        MemoryStore recovered = newStore();
+        recovered.open();
+        try {
+            FilmStorage films = new InMemoryFilmStorage(recovered);
+            assertThat(films.getAllFilms()).extracting(Film::getId).containsExactly(kept.getId());
+            assertThat(films.getFilmById(kept.getId()).orElseThrow().getGenres()).extracting(Genre::getName)
+                    .containsExactly("Мультфильм");
+            assertThat(films.getLikeCounts(List.of(kept.getId()))).containsEntry(kept.getId(), 2);
+            assertThat(new InMemoryUserStorage(recovered).getFriends(alice.getId())).extracting(User::getId)
+                    .containsExactly(bob.getId());
+            assertThat(films.createFilm(film("Next")).getId()).isGreaterThan(deleted.getId());
+        } finally {
+            recovered.close();
+        }
+
+        MemoryStore reopened = newStore();
+        reopened.open();
+        try {
+            assertThat(new InMemoryFilmStorage(reopened).getPopularFilms(10)).extracting(Film::getName)
+                    .containsExactly("Kept", "Next");
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void shouldNotAttachRelationsOfLostEntitiesToReissuedIds() throws IOException {
+        Film kept = filmStorage().createFilm(film("Kept"));
+        User alice = userStorage().createUser(user("alice"));
+        store.snapshot();
+
+        Film lost = filmStorage().createFilm(film("Lost"));
+        User bob = userStorage().createUser(user("bob"));
+        filmStorage().addLike(lost.getId(), alice.getId());
+        filmStorage().addLike(kept.getId(), bob.getId());
+        userStorage().addFriend(alice.getId(), bob.getId());
+        // Хвост журнала с созданием фильма и пользователя пропал, а журнал связей успел записаться
+        try (Stream<Path> files = Files.list(directory)) {
+            Path lastSegment = files.filter(file -> file.getFileName().toString().startsWith("wal-"))
+                    .max(Path::compareTo)
+                    .orElseThrow();
+            Files.write(lastSegment, new byte[0], StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        MemoryStore recovered = newStore();
+        recovered.open();
+        try {
+            assertThat(new InMemoryFilmStorage(recovered).createFilm(film("Next")).getId()).isEqualTo(lost.getId());
+            assertThat(new InMemoryUserStorage(recovered).createUser(user("carol")).getId()).isEqualTo(bob.getId());
+        } finally {
+            recovered.close();
+        }
+
+        MemoryStore reopened = newStore();
+        reopened.open();
+        try {
+            FilmStorage films = new InMemoryFilmStorage(reopened);
+            assertThat(films.getLikeCounts(List.of(kept.getId(), lost.getId())))
+                    .containsEntry(kept.getId(), 0)
+                    .containsEntry(lost.getId(), 0);
+            assertThat(new InMemoryUserStorage(reopened).getFriends(alice.getId())).isEmpty();
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void shouldRecoverRelationsFromCompactedLog() throws IOException {
+        Film first = filmStorage().createFilm(film("First"));
+        Film second = filmStorage().createFilm(film("Second"));
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            users.add(userStorage().createUser(user("user" + i)));
+        }
+        for (User user : users) {
+            filmStorage().addLike(first.getId(), user.getId());
+        }
+        for (User user : users.subList(1, users.size())) {
+            userStorage().addFriend(users.get(0).getId(), user.getId());
+        }
+        filmStorage().removeLike(first.getId(), users.get(5).getId());
+        store.compactRelations();
+
+        filmStorage().addLike(second.getId(), users.get(1).getId());
+        filmStorage().addLike(second.getId(), users.get(2).getId());
+        userStorage().removeFriend(users.get(0).getId(), users.get(1).getId());
+        userStorage().deleteUser(users.get(2).getId());
+        filmStorage().deleteFilm(first.getId());
+        Film third = filmStorage().createFilm(film("Third"));
+        filmStorage().addLike(third.getId(), users.get(3).getId());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.map(file -> file.getFileName().toString()))
+                    .anyMatch(name -> name.startsWith("rel-base-"));
+        }
+
+        MemoryStore recovered = newStore();
+        recovered.open();
+        try {
+            FilmStorage films = new InMemoryFilmStorage(recovered);
+            assertThat(films.getLikeCounts(List.of(second.getId(), third.getId())))
+                    .containsEntry(second.getId(), 1)
+                    .containsEntry(third.getId(), 1);
+            List<Long> likes = new ArrayList<>();
+            films.forEachLike((filmId, userId) -> likes.add(userId));
+            assertThat(likes).containsExactlyInAnyOrder(users.get(1).getId(), users.get(3).getId());
+            assertThat(new InMemoryUserStorage(recovered).getFriends(users.get(0).getId())).extracting(User::getId)
+                    .containsExactly(users.get(3).getId(), users.get(4).getId(), users.get(5).getId());
+        } finally {
+            recovered.close();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.cache.JsonByteCache;
+import ru.yandex.practicum.filmorate.cache.JsonCacheInvalidationAspect;
+import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.UserDbStorage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Ratings;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@ImportAutoConfiguration({AopAutoConfiguration.class, JacksonAutoConfiguration.class})
+@Import({FilmDbStorage.class, UserDbStorage.class, GenreDbStorage.class, JsonByteCache.class,
+        JsonCacheInvalidationAspect.class})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class JsonByteCacheTests {
+
+    @Autowired
+    private FilmStorage filmStorage;
+
+    @Autowired
+    private JsonByteCache cache;
+
+    @Test
+    void shouldRejectStaleRenderAfterInvalidate() {
+        JsonByteCache cache = new JsonByteCache(new ObjectMapper(), 1024);
+        AtomicInteger loads = new AtomicInteger();
+        cache.renderEntity(JsonByteCache.FILM, 1, 1, () -> load(loads, "v1"), value -> 1);
+
+        cache.invalidate(JsonByteCache.FILM, 1, 2);
+        // Читатель, начавший до изменения, рендерит старую версию, но не должен вернуть её в кэш
+        cache.renderEntity(JsonByteCache.FILM, 1, 1, () -> load(loads, "v1"), value -> 1);
+        assertThat(json(cache.renderEntity(JsonByteCache.FILM, 1, 2, () -> load(loads, "v2"), value -> 2)))
+                .isEqualTo("\"v2\"");
+        assertThat(json(cache.renderEntity(JsonByteCache.FILM, 1, 2, () -> load(loads, "v2"), value -> 2)))
+                .isEqualTo("\"v2\"");
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedEntriesOverMaxBytes() {
+        // Каждая запись весит 64 байта служебных данных плюс 12 байт JSON, в кэш помещаются три
+        JsonByteCache cache = new JsonByteCache(new ObjectMapper(), 250);
+        AtomicInteger loads = new AtomicInteger();
+        for (long id = 1; id <= 3; id++) {
+            cache.renderEntity(JsonByteCache.USER, id, 0, () -> load(loads, "0123456789"), value -> 0);
+        }
+        cache.renderEntity(JsonByteCache.USER, 1, 0, () -> load(loads, "0123456789"), value -> 0);
+        cache.renderEntity(JsonByteCache.USER, 4, 0, () -> load(loads, "0123456789"), value -> 0);
+
+        assertThat(cache.getEvictions()).isEqualTo(1);
+        assertThat(cache.getSizeBytes()).isEqualTo(3 * (64 + 12));
+        cache.renderEntity(JsonByteCache.USER, 1, 0, () -> load(loads, "0123456789"), value -> 0);
+        assertThat(loads).hasValue(4);
+        cache.renderEntity(JsonByteCache.USER, 2, 0, () -> load(loads, "0123456789"), value -> 0);
+        assertThat(loads).hasValue(5);
+    }
+
+    @Test
+    void shouldInvalidateFilmJsonOnStorageUpdateAndDelete() {
+        Film before = filmStorage.createFilm(film("Before"));
+        long id = before.getId();
+        AtomicInteger loads = new AtomicInteger();
+        renderFilm(before, loads);
+        renderFilm(before, loads);
+        assertThat(loads).hasValue(1);
+
+        Film changed = film("After");
+        changed.setId(id);
+        Film updated = filmStorage.updateFilm(changed);
+        renderFilm(before, loads);
+        assertThat(loads).hasValue(2);
+        assertThat(json(renderFilm(updated, loads))).contains("\"After\"");
+        renderFilm(updated, loads);
+        assertThat(loads).hasValue(3);
+
+        filmStorage.deleteFilm(id);
+        renderFilm(updated, loads);
+        renderFilm(updated, loads);
+        assertThat(loads).hasValue(5);
+    }
+
+    private byte[] renderFilm(Film film, AtomicInteger loads) {
+        return cache.renderEntity(JsonByteCache.FILM, film.getId(), film.getVersion(), () -> load(loads, film),
+                Film::getVersion);
+    }
+
+    private static <T> T load(AtomicInteger loads, T value) {
+        loads.incrementAndGet();
+        return value;
+    }
+
+    private static String json(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Film film(String name) {
+        return Film.builder()
+                .name(name)
+                .description("Description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Ratings(1, null))
+                .build();
+    }
+}
@@ -0,0 +1,160 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.test.context.TestPropertySource;
+import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.dao.UserDbStorage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Ratings;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmDbStorage.class, UserDbStorage.class, GenreDbStorage.class, LikeWriteBuffer.class})
+@TestPropertySource(properties = {
+        "filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.flush-interval-ms=60000"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+// Индекс лайков обновляется после фиксации, поэтому тесты идут без общей транзакции с откатом
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LikeWriteBufferTests {
+
+    @Autowired
+    private FilmDbStorage filmStorage;
+
+    @Autowired
+    private UserStorage userStorage;
+
+    @Autowired
+    private LikeWriteBuffer likeWriteBuffer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shouldSeePendingLikesBeforeFlushAndPersistThemAfter() {
+        Film first = filmStorage.createFilm(film("First"));
+        Film second = filmStorage.createFilm(film("Second"));
+        User alice = userStorage.createUser(user("alice"));
+        User bob = userStorage.createUser(user("bob"));
+
+        filmStorage.addLike(second.getId(), alice.getId());
+        filmStorage.addLike(second.getId(), bob.getId());
+        filmStorage.addLike(first.getId(), alice.getId());
+        filmStorage.removeLike(first.getId(), alice.getId());
+        filmStorage.addLike(first.getId(), bob.getId());
+
+        assertThat(countLikes()).isZero();
+        assertThat(filmStorage.getPopularFilms(1)).extracting(Film::getId).containsExactly(second.getId());
+
+        likeWriteBuffer.flush();
+
+        assertThat(countLikes()).isEqualTo(3);
+        assertThat(filmStorage.getPopularFilms(2)).extracting(Film::getId)
+                .containsExactly(second.getId(), first.getId());
+        assertThat(filmStorage.checkLikesIndexConsistency()).isTrue();
+    }
+
+    @Test
+    void shouldIgnoreDuplicateLikesWhenFlushing() {
+        Film film = filmStorage.createFilm(film("Film"));
+        User alice = userStorage.createUser(user("alice"));
+
+        filmStorage.addLike(film.getId(), alice.getId());
+        likeWriteBuffer.flush();
+        filmStorage.addLike(film.getId(), alice.getId());
+        likeWriteBuffer.flush();
+
+        assertThat(countLikes()).isEqualTo(1);
+        assertThat(filmStorage.checkLikesIndexConsistency()).isTrue();
+    }
+
+    @Test
+    void shouldOverlayOnlyRealChangesAgainstStoredLikes() {
+        Film liked = filmStorage.createFilm(film("Liked"));
+        Film other = filmStorage.createFilm(film("Other"));
+        User alice = userStorage.createUser(user("alice"));
+        User bob = userStorage.createUser(user("bob"));
+        filmStorage.addLike(liked.getId(), alice.getId());
+        filmStorage.addLike(other.getId(), alice.getId());
+        filmStorage.addLike(other.getId(), bob.getId());
+        likeWriteBuffer.flush();
+
+        assertThat(filmStorage.addLike(liked.getId(), alice.getId())).isFalse();
+        assertThat(filmStorage.removeLike(liked.getId(), bob.getId())).isFalse();
+        assertThat(filmStorage.addLike(liked.getId(), bob.getId())).isTrue();
+        assertThat(filmStorage.addLike(liked.getId(), bob.getId())).isFalse();
+        assertThat(filmStorage.removeLike(other.getId(), bob.getId())).isTrue();
+        assertThat(filmStorage.addLike(other.getId(), bob.getId())).isTrue();
+
+        // Повторный лайк и снятие несуществующего лайка не меняют счёт: у обоих фильмов по два лайка
+        assertThat(filmStorage.getPopularFilms(2)).extracting(Film::getId)
+                .containsExactly(liked.getId(), other.getId());
+        filmStorage.removeLike(liked.getId(), bob.getId());
+        assertThat(filmStorage.getPopularFilms(2)).extracting(Film::getId)
+                .containsExactly(other.getId(), liked.getId());
+
+        likeWriteBuffer.flush();
+        assertThat(countLikes()).isEqualTo(3);
+        assertThat(filmStorage.checkLikesIndexConsistency()).isTrue();
+    }
+
+    @Test
+    void shouldKeepIndexConsistentWhenOneRowOfBatchFails() {
+        Film kept = filmStorage.createFilm(film("Kept"));
+        Film deleted = filmStorage.createFilm(film("Deleted"));
+        User alice = userStorage.createUser(user("alice"));
+        User bob = userStorage.createUser(user("bob"));
+
+        filmStorage.addLike(kept.getId(), alice.getId());
+        filmStorage.addLike(deleted.getId(), alice.getId());
+        filmStorage.addLike(kept.getId(), bob.getId());
+        // Фильм удалён без сброса буфера: его лайк в середине пачки нарушает внешний ключ
+        filmStorage.deleteFilm(deleted.getId());
+        likeWriteBuffer.flush();
+
+        assertThat(countLikes()).isEqualTo(2);
+        assertThat(filmStorage.getLikeCounts(List.of(kept.getId()))).containsEntry(kept.getId(), 2);
+        assertThat(filmStorage.checkLikesIndexConsistency()).isTrue();
+    }
+
+    private Integer countLikes() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes", Integer.class);
+    }
+
+    private Film film(String name) {
+        return Film.builder()
+                .name(name)
+                .description("Description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Ratings(1, null))
+                .build();
+    }
+
+    private User user(String login) {
+        return User.builder()
+                .email(login + "@example.com")
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
@@ -0,0 +1,198 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.RatingsDbStorage;
+import ru.yandex.practicum.filmorate.dao.UserDbStorage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.Ratings;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Прогоняет все методы хранилищ на заполненной базе, собирает выполненные запросы из статистики H2
+ * и проверяет их планы: запрос с условием не должен читать ни одну таблицу целиком.
+ * Полный проход без WHERE (загрузка индексов и справочников) может просканировать одну таблицу,
+ * остальные таблицы в нём должны подключаться по индексу. Контекст может достаться от других тестов
+ * с уже выданными ID, поэтому обращения идут к ID, выданным при заполнении.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({FilmDbStorage.class, UserDbStorage.class, GenreDbStorage.class, RatingsDbStorage.class})
+class QueryPlanTests {
+    private static final int FILMS = 2000;
+    private static final int USERS = 1000;
+    private static final Pattern TABLE_SCAN = Pattern.compile("/\\* PUBLIC\\.(\\w+)\\.tableScan");
+
+    @Autowired
+    private FilmDbStorage filmStorage;
+
+    @Autowired
+    private UserDbStorage userStorage;
+
+    @Autowired
+    private GenreDbStorage genreStorage;
+
+    @Autowired
+    private RatingsDbStorage ratingsStorage;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private List<Long> filmIds;
+
+    private List<Long> userIds;
+
+    @Test
+    void hotQueriesShouldNotScanTables() {
+        seed();
+        jdbcTemplate.execute("ANALYZE");
+        jdbcTemplate.execute("SET QUERY_STATISTICS_MAX_ENTRIES 1000");
+        jdbcTemplate.execute("SET QUERY_STATISTICS TRUE");
+
+        exerciseStorages();
+
+        List<String> statements = jdbcTemplate.queryForList(
+                "SELECT SQL_STATEMENT FROM INFORMATION_SCHEMA.QUERY_STATISTICS", String.class);
+        jdbcTemplate.execute("SET QUERY_STATISTICS FALSE");
+        Map<String, String> violations = new LinkedHashMap<>();
+        int explained = 0;
+        for (String sql : statements) {
+            if (!isExplainable(sql)) {
+                continue;
+            }
+            explained++;
+            String plan = jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+            List<String> scanned = new ArrayList<>();
+            Matcher matcher = TABLE_SCAN.matcher(plan);
+            while (matcher.find()) {
+                scanned.add(matcher.group(1));
+            }
+            int allowed = sql.toUpperCase().contains(" WHERE ") ? 0 : 1;
+            if (scanned.size() > allowed) {
+                violations.put(sql, plan);
+            }
+        }
+
+        assertThat(explained).isGreaterThan(30);
+        assertThat(violations).isEmpty();
+    }
+
+    private void seed() {
+        List<User> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(User.builder()
+                    .email("user" + i + "@example.com")
+                    .login("user" + i)
+                    .name("user" + i)
+                    .birthday(LocalDate.of(1990, 1, 1).plusDays(i))
+                    .build());
+        }
+        userIds = userStorage.createUsers(users).stream().map(User::getId).toList();
+
+        List<Film> films = new ArrayList<>(FILMS);
+        for (int i = 0; i < FILMS; i++) {
+            films.add(Film.builder()
+                    .name("Film " + i)
+                    .description("Description " + i)
+                    .releaseDate(LocalDate.of(1950 + i % 70, 1, 1))
+                    .duration(90 + i % 60)
+                    .mpa(new Ratings(1 + i % 5, null))
+                    .genres(List.of(new Genre(1 + i % 6, null), new Genre(1 + (i + 1) % 6, null)))
+                    .build());
+        }
+        filmIds = filmStorage.createFilms(films).stream().map(Film::getId).toList();
+
+        List<Like> likes = new ArrayList<>();
+        List<Friendship> friendships = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            for (int j = 0; j < 10; j++) {
+                likes.add(new Like(filmIds.get((i * 7 + j * 131) % FILMS), userIds.get(i)));
+                friendships.add(new Friendship(userIds.get(i), userIds.get((i + j * 37) % USERS)));
+            }
+        }
+        filmStorage.addLikes(likes);
+        userStorage.addFriends(friendships.stream()
+                .filter(friendship -> friendship.getUserId() != friendship.getFriendId())
+                .toList());
+    }
+
+    private void exerciseStorages() {
+        filmStorage.getAllFilms();
+        filmStorage.getFilms(film(100), 50);
+        filmStorage.getFilmIds(film(100), 50);
+        filmStorage.streamFilms(film(FILMS - 10), film -> { });
+        filmStorage.getFilmById(film(5));
+        filmStorage.filmExists(film(5));
+        filmStorage.getFilmVersion(film(5));
+        Film film = filmStorage.getFilmById(film(6)).orElseThrow();
+        film.setDuration(200);
+        filmStorage.updateFilm(film);
+        filmStorage.addLike(film(7), user(3));
+        filmStorage.removeLike(film(7), user(3));
+        filmStorage.getPopularFilms(10, 1, null);
+        filmStorage.getFilmsByIds(List.of(film(1), film(2), film(3)));
+        filmStorage.getCatalogFingerprint();
+        filmStorage.forEachLike((filmId, userId) -> { });
+        filmStorage.checkLikesIndexConsistency();
+        filmStorage.deleteFilm(film(FILMS));
+
+        userStorage.getAllUsers();
+        userStorage.getUsers(user(100), 50);
+        userStorage.streamUsers(user(USERS - 10), user -> { });
+        userStorage.getUserById(user(5));
+        userStorage.userExists(user(5));
+        userStorage.getUserVersion(user(5));
+        User user = userStorage.getUserById(user(6)).orElseThrow();
+        user.setName("renamed");
+        userStorage.updateUser(user);
+        userStorage.addFriend(user(8), user(9));
+        userStorage.removeFriend(user(8), user(9));
+        userStorage.getFriends(user(5));
+        userStorage.getCommonFriends(user(5), user(6));
+        userStorage.getFriendSuggestions(user(5), 10);
+        userStorage.rebuildFriendGraph();
+        filmStorage.removeUserLikes(user(USERS));
+        userStorage.deleteUser(user(USERS));
+
+        genreStorage.refresh();
+        genreStorage.getFilmGenres(film(5));
+        genreStorage.replaceFilmGenres(film(5), List.of(1, 3));
+        genreStorage.getGenresForFilms(List.of(film(1), film(2), film(3)));
+        ratingsStorage.refresh();
+        ratingsStorage.getFilmRating(film(5));
+    }
+
+    // Номер фильма или пользователя при заполнении, начиная с 1
+    private long film(int number) {
+        return filmIds.get(number - 1);
+    }
+
+    private long user(int number) {
+        return userIds.get(number - 1);
+    }
+
+    private static boolean isExplainable(String sql) {
+        String statement = sql.stripLeading().toUpperCase();
+        return statement.startsWith("SELECT") || statement.startsWith("UPDATE")
+                || statement.startsWith("DELETE") || statement.startsWith("MERGE");
+    }
+}
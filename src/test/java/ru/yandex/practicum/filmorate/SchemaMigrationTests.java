@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Обновление базы, созданной исходными schema.sql и data.sql (без истории Flyway), до текущей схемы.
+ */
+class SchemaMigrationTests {
+    private DriverManagerDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void createBaselineDatabase() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:baseline-migration;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                new ClassPathResource("baseline/schema.sql"), new ClassPathResource("baseline/data.sql"));
+        populator.setSqlScriptEncoding(StandardCharsets.UTF_8.name());
+        populator.execute(dataSource);
+    }
+
+    @AfterEach
+    void dropDatabase() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void shouldUpgradeBaselineDatabaseKeepingData() {
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) " +
+                "VALUES ('alice@example.com', 'alice', 'Alice', DATE '1990-01-01')");
+        jdbcTemplate.update("INSERT INTO film (name, description, releaseDate, duration, rating_id) " +
+                "VALUES ('Film', 'Description', DATE '2000-01-01', 100, 1)");
+        jdbcTemplate.update("INSERT INTO genres_film (film_id, genre_id) VALUES (1, 1), (1, 1), (1, 2)");
+        jdbcTemplate.update("INSERT INTO likes (film_id, user_id) VALUES (1, 1)");
+
+        assertThat(migrate()).isEqualTo(5);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT version FROM users WHERE login = 'alice'", Long.class))
+                .isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT version FROM film WHERE id = 1", Long.class)).isZero();
+        assertThat(jdbcTemplate.queryForList("SELECT genre_id FROM genres_film WHERE film_id = 1 ORDER BY genre_id",
+                Integer.class)).containsExactly(1, 2);
+        assertThatThrownBy(() -> jdbcTemplate.update("INSERT INTO genres_film (film_id, genre_id) VALUES (1, 2)"))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes", Integer.class)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES " +
+                "WHERE INDEX_NAME = 'GENRES_FILM_GENRE_IDX'", Integer.class)).isEqualTo(1);
+
+        assertThat(migrate()).isZero();
+    }
+
+    private int migrate() {
+        return Flyway.configure()
+                .dataSource(dataSource)
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate()
+                .migrationsExecuted;
+    }
+}
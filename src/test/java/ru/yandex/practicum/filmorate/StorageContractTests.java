@@ -0,0 +1,260 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.Ratings;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.RatingsStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Общий контракт хранилищ: каждая реализация FilmStorage, UserStorage, GenreStorage и RatingsStorage
+ * запускает эти тесты через свой наследник.
+ */
+abstract class StorageContractTests {
+
+    protected abstract FilmStorage filmStorage();
+
+    protected abstract UserStorage userStorage();
+
+    protected abstract GenreStorage genreStorage();
+
+    protected abstract RatingsStorage ratingsStorage();
+
+    @Test
+    void shouldServeReferenceData() {
+        assertThat(genreStorage().getAllGenres()).extracting(Genre::getName)
+                .containsExactly("Комедия", "Драма", "Мультфильм", "Триллер", "Документальный", "Боевик");
+        assertThat(ratingsStorage().getAllRatings()).extracting(Ratings::getName)
+                .containsExactly("G", "PG", "PG-13", "R", "NC-17");
+        assertThat(genreStorage().getGenreById(7)).isEmpty();
+        assertThat(ratingsStorage().getRatingById(3)).get().extracting(Ratings::getName).isEqualTo("PG-13");
+
+        Film film = film("Rated");
+        film.setMpa(new Ratings(4, null));
+        film = filmStorage().createFilm(film);
+        assertThat(ratingsStorage().getFilmRating(film.getId()).getName()).isEqualTo("R");
+    }
+
+    @Test
+    void shouldStoreFilmWithGenresAndBumpVersion() {
+        Film film = filmStorage().createFilm(film("First"));
+        genreStorage().replaceFilmGenres(film.getId(), List.of(2, 1, 2));
+
+        Film stored = filmStorage().getFilmById(film.getId()).orElseThrow();
+        assertThat(stored.getMpa().getName()).isEqualTo("G");
+        assertThat(stored.getGenres()).extracting(Genre::getId).containsExactly(1, 2);
+        assertThat(stored.getGenres()).extracting(Genre::getName).containsExactly("Комедия", "Драма");
+        assertThat(genreStorage().getFilmGenres(film.getId())).extracting(Genre::getId)
+                .containsExactlyInAnyOrder(1, 2);
+        assertThat(filmStorage().getFilmVersion(film.getId())).contains(0L);
+
+        film.setName("Second");
+        film.setMpa(new Ratings(2, null));
+        assertThat(filmStorage().updateFilm(film).getVersion()).isEqualTo(1L);
+        stored = filmStorage().getFilmById(film.getId()).orElseThrow();
+        assertThat(stored.getName()).isEqualTo("Second");
+        assertThat(stored.getMpa().getName()).isEqualTo("PG");
+        assertThat(stored.getGenres()).extracting(Genre::getId).containsExactly(1, 2);
+
+        genreStorage().replaceFilmGenres(film.getId(), List.of());
+        assertThat(genreStorage().getGenresForFilms(List.of(film.getId()))).isEmpty();
+        assertThat(filmStorage().getFilmVersion(film.getId())).contains(1L);
+        assertThat(filmStorage().filmExists(film.getId() + 1)).isFalse();
+        assertThat(filmStorage().getFilmById(film.getId() + 1)).isEmpty();
+    }
+
+    @Test
+    void shouldRejectUpdateOfMissingFilm() {
+        Film film = film("Ghost");
+        film.setId(1000);
+
+        assertThatThrownBy(() -> filmStorage().updateFilm(film)).isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    void shouldPageFilmsAndUsersInIdOrder() {
+        List<Long> filmIds = new ArrayList<>();
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            filmIds.add(filmStorage().createFilm(film("Film " + i)).getId());
+            userIds.add(userStorage().createUser(user("user" + i)).getId());
+        }
+        filmStorage().deleteFilm(filmIds.get(2));
+
+        assertThat(filmStorage().getFilmIds(filmIds.get(0), 2)).containsExactly(filmIds.get(1), filmIds.get(3));
+        assertThat(filmStorage().getFilms(filmIds.get(1), 10)).extracting(Film::getId)
+                .containsExactly(filmIds.get(3), filmIds.get(4));
+        List<Long> streamed = new ArrayList<>();
+        filmStorage().streamFilms(0, film -> streamed.add(film.getId()));
+        assertThat(streamed).containsExactly(filmIds.get(0), filmIds.get(1), filmIds.get(3), filmIds.get(4));
+        assertThat(filmStorage().getAllFilms()).hasSize(4);
+        assertThat(filmStorage().getFilmsByIds(List.of(filmIds.get(4), filmIds.get(2), filmIds.get(0))))
+                .extracting(Film::getId).containsExactly(filmIds.get(4), filmIds.get(0));
+
+        assertThat(userStorage().getUsers(userIds.get(2), 10)).extracting(User::getId)
+                .containsExactly(userIds.get(3), userIds.get(4));
+        List<Long> streamedUsers = new ArrayList<>();
+        userStorage().streamUsers(userIds.get(3), user -> streamedUsers.add(user.getId()));
+        assertThat(streamedUsers).containsExactly(userIds.get(4));
+        assertThat(userStorage().getAllUsers()).hasSize(5);
+        assertThat(filmStorage().getCatalogFingerprint()).isEqualTo("4:" + filmIds.get(4) + ":0");
+    }
+
+    @Test
+    void shouldCountLikesAndRankPopularFilms() {
+        // Как в FilmService: жанры передаются при создании и затем сохраняются отдельно
+        Film comedy = filmStorage().createFilm(withGenres(film("Comedy"), 1));
+        genreStorage().replaceFilmGenres(comedy.getId(), List.of(1));
+        Film drama = filmStorage().createFilms(List.of(withGenres(film("Drama"), 1, 2))).get(0);
+        Film plain = filmStorage().createFilm(film("Plain"));
+        User alice = userStorage().createUser(user("alice"));
+        User bob = userStorage().createUser(user("bob"));
+
+        assertThat(filmStorage().addLike(drama.getId(), alice.getId())).isTrue();
+        assertThat(filmStorage().addLike(drama.getId(), alice.getId())).isFalse();
+        assertThat(filmStorage().addLikes(List.of(new Like(drama.getId(), bob.getId()),
+                new Like(comedy.getId(), alice.getId()), new Like(drama.getId(), alice.getId())))).hasSize(2);
+        filmStorage().addLike(plain.getId(), bob.getId());
+        assertThat(filmStorage().removeLike(plain.getId(), bob.getId())).isTrue();
+        assertThat(filmStorage().removeLike(plain.getId(), bob.getId())).isFalse();
+
+        assertThat(filmStorage().getPopularFilms(2)).extracting(Film::getId)
+                .containsExactly(drama.getId(), comedy.getId());
+        assertThat(filmStorage().getPopularFilmIds(10, 2, 2000)).containsExactly(drama.getId());
+        assertThat(filmStorage().getPopularFilms(10, 1, null)).extracting(Film::getId)
+                .containsExactly(drama.getId(), comedy.getId());
+        assertThat(filmStorage().getLikeCounts(List.of(drama.getId(), plain.getId())))
+                .containsEntry(drama.getId(), 2).containsEntry(plain.getId(), 0);
+        List<Like> likes = new ArrayList<>();
+        filmStorage().forEachLike((filmId, userId) -> likes.add(new Like(filmId, userId)));
+        assertThat(likes).containsExactlyInAnyOrder(new Like(drama.getId(), alice.getId()),
+                new Like(drama.getId(), bob.getId()), new Like(comedy.getId(), alice.getId()));
+
+        filmStorage().deleteFilm(drama.getId());
+        assertThat(filmStorage().getPopularFilms(10)).extracting(Film::getId)
+                .containsExactly(comedy.getId(), plain.getId());
+        assertThat(filmStorage().filmExists(drama.getId())).isFalse();
+    }
+
+    @Test
+    void shouldRejectReferencesToMissingEntities() {
+        Film film = filmStorage().createFilm(film("Film"));
+        User user = userStorage().createUser(user("alice"));
+
+        assertThatThrownBy(() -> filmStorage().addLike(film.getId(), user.getId() + 100))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThatThrownBy(() -> filmStorage().addLike(film.getId() + 100, user.getId()))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThatThrownBy(() -> userStorage().addFriend(user.getId(), user.getId() + 100))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThatThrownBy(() -> filmStorage().addLikes(List.of(new Like(film.getId(), user.getId() + 100))))
+                .isInstanceOf(DataAccessException.class);
+        assertThatThrownBy(() -> genreStorage().replaceFilmGenres(film.getId(), List.of(42)))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(filmStorage().removeLike(film.getId(), user.getId() + 100)).isFalse();
+        assertThat(userStorage().removeFriend(user.getId(), user.getId() + 100)).isFalse();
+    }
+
+    @Test
+    void shouldMaintainOneWayFriendships() {
+        List<User> users = userStorage().createUsers(List.of(user("me"), user("alice"), user("bob"),
+                user("carol"), user("dave")));
+        long me = users.get(0).getId();
+        long alice = users.get(1).getId();
+        long bob = users.get(2).getId();
+        long carol = users.get(3).getId();
+        long dave = users.get(4).getId();
+        assertThat(users.get(0).getName()).isEqualTo("me");
+
+        assertThat(userStorage().addFriend(me, alice)).isTrue();
+        assertThat(userStorage().addFriend(me, alice)).isFalse();
+        assertThat(userStorage().addFriends(List.of(new Friendship(me, bob), new Friendship(alice, bob),
+                new Friendship(alice, carol), new Friendship(bob, carol), new Friendship(bob, dave)))).isEqualTo(5);
+
+        assertThat(userStorage().getFriends(me)).extracting(User::getId).containsExactlyInAnyOrder(alice, bob);
+        assertThat(userStorage().getFriends(carol)).isEmpty();
+        assertThat(userStorage().getCommonFriends(me, alice)).extracting(User::getId).containsExactly(bob);
+        assertThat(userStorage().getFriendSuggestions(me, 10)).extracting(User::getId).containsExactly(carol, dave);
+
+        assertThat(userStorage().removeFriend(me, alice)).isTrue();
+        assertThat(userStorage().getFriends(me)).extracting(User::getId).containsExactly(bob);
+
+        User renamed = userStorage().getUserById(carol).orElseThrow();
+        renamed.setName("Carol");
+        assertThat(userStorage().updateUser(renamed).getVersion()).isEqualTo(1L);
+        assertThat(userStorage().getUserById(carol)).get().extracting(User::getName).isEqualTo("Carol");
+        assertThat(userStorage().getUserVersion(carol)).contains(1L);
+        assertThat(userStorage().userExists(dave + 1)).isFalse();
+        assertThat(userStorage().getUserById(dave + 1)).isEmpty();
+    }
+
+    @Test
+    void shouldDeleteUserWithLikesAndFriendships() {
+        Film film = filmStorage().createFilm(film("Film"));
+        List<User> users = userStorage().createUsers(List.of(user("alice"), user("bob"), user("carol")));
+        long alice = users.get(0).getId();
+        long bob = users.get(1).getId();
+        long carol = users.get(2).getId();
+        filmStorage().addLike(film.getId(), alice);
+        filmStorage().addLike(film.getId(), bob);
+        userStorage().addFriend(alice, bob);
+        userStorage().addFriend(bob, alice);
+        userStorage().addFriend(carol, alice);
+
+        // Как в UserService: сначала лайки, затем сам пользователь
+        filmStorage().removeUserLikes(alice);
+        userStorage().deleteUser(alice);
+
+        assertThat(userStorage().userExists(alice)).isFalse();
+        assertThat(filmStorage().getLikeCounts(List.of(film.getId()))).containsEntry(film.getId(), 1);
+        List<Like> likes = new ArrayList<>();
+        filmStorage().forEachLike((filmId, userId) -> likes.add(new Like(filmId, userId)));
+        assertThat(likes).containsExactly(new Like(film.getId(), bob));
+        assertThat(userStorage().getFriends(bob)).isEmpty();
+        assertThat(userStorage().getFriends(carol)).isEmpty();
+    }
+
+    protected static Film film(String name) {
+        return Film.builder()
+                .name(name)
+                .description("Description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(new Ratings(1, null))
+                .build();
+    }
+
+    protected static User user(String login) {
+        return User.builder()
+                .email(login + "@example.com")
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+
+    protected static Film withGenres(Film film, int... genreIds) {
+        List<Genre> genres = new ArrayList<>();
+        for (int genreId : genreIds) {
+            genres.add(new Genre(genreId, null));
+        }
+        film.setGenres(genres);
+        return film;
+    }
+}